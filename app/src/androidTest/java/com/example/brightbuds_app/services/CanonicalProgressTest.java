@@ -0,0 +1,125 @@
+package com.example.brightbuds_app.services;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.brightbuds_app.models.ModuleRollup;
+import com.example.brightbuds_app.models.Progress;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Saves to one canonical child_progress row must accumulate into it rather
+ * than replace it.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CanonicalProgressTest extends ProgressDbTestCase {
+
+    public CanonicalProgressTest() {
+        super("canonical_progress_test.db");
+    }
+
+    @Test
+    public void repeatedSavesKeepPlaysTimeAndBestScore() {
+        Map<String, Long> session = new HashMap<>();
+        session.put("plays", 1L);
+        session.put("timeSpent", 30_000L);
+
+        helper.addCounterDeltas("child1_m1", "parent1", "child1", "m1", session);
+        helper.insertOrUpdateProgress("child1_m1", "parent1", "child1", "m1",
+                90, "completed", 1_000L, 0L, true);
+
+        helper.addCounterDeltas("child1_m1", "parent1", "child1", "m1", session);
+        helper.insertOrUpdateProgress("child1_m1", "parent1", "child1", "m1",
+                40, "in_progress", 2_000L, 0L, false);
+
+        ModuleRollup rollup = helper.getModuleRollups(Collections.singletonList("child1")).get(0);
+        assertEquals(2, rollup.getTotalPlays());
+        assertEquals(60_000L, rollup.getTotalTimeSpent());
+        assertEquals(90, rollup.getBestScore());
+        assertEquals(1, helper.countUnsynced());
+    }
+
+    @Test
+    public void duplicatesCollapseToCanonicalIdKeepingRollup() {
+        SQLiteDatabase db = helper.getWritableDatabase();
+
+        ContentValues offline = progressRow("offline_1", "child1", "m1", 0);
+        offline.put(DatabaseHelper.COLUMN_SCORE, 40);
+        offline.put(DatabaseHelper.COLUMN_STATUS, "in_progress");
+        offline.put(DatabaseHelper.COLUMN_TIMESTAMP, 1_800_000_000_000L);
+        db.insert(DatabaseHelper.TABLE_CHILD_PROGRESS, null, progressRow("autoId", "child1", "m1", 1));
+        db.insert(DatabaseHelper.TABLE_CHILD_PROGRESS, null, offline);
+
+        assertEquals(1, helper.collapseDuplicateProgress());
+        assertEquals(1, helper.getProgressForChildren(Collections.singletonList("child1")).size());
+
+        // Still pending because one source was; it now uploads as child1_m1
+        List<Progress> pending = helper.getUnsyncedProgressDetails();
+        assertEquals(1, pending.size());
+        assertEquals("child1_m1", pending.get(0).getProgressId());
+        assertEquals(80, (int) pending.get(0).getScore());
+
+        ModuleRollup rollup = helper.getModuleRollups(Collections.singletonList("child1")).get(0);
+        assertEquals(2, rollup.getTotalPlays());
+        assertEquals(60_000L, rollup.getTotalTimeSpent());
+        assertTrue(rollup.isCompleted());
+
+        assertEquals(0, helper.collapseDuplicateProgress());
+    }
+
+    @Test
+    public void bestScoreAndCompletionSurviveLaterWritesAndPulls() {
+        // Offline best score, not uploaded yet
+        helper.insertOrUpdateProgress("child1_m1", "parent1", "child1", "m1",
+                90, "completed", 1_000L, 0L, false);
+        // A later, lower online session must not mark that row synced
+        helper.insertOrUpdateProgress("child1_m1", "parent1", "child1", "m1",
+                40, "in_progress", 2_000L, 0L, true);
+        assertEquals(1, helper.countUnsynced());
+
+        // A pull of an older server document keeps the cached best and completion
+        Progress server = progressDoc("child1_m1", 3_000L);
+        server.setScore(40);
+        server.setStatus("in_progress");
+        helper.upsertProgressBatch(Collections.singletonList(server), true);
+
+        Progress row = helper.getProgressForChildren(Collections.singletonList("child1")).get(0);
+        assertEquals(90, (int) row.getScore());
+        assertEquals("completed", row.getStatus());
+        assertEquals(90, helper.getModuleRollups(Collections.singletonList("child1")).get(0).getBestScore());
+    }
+
+    @Test
+    public void upgradeThenPullThenDedupCountsLegacyHistoryOnce() {
+        List<Progress> legacy = Arrays.asList(progressDoc("autoId1", 1_000L), progressDoc("autoId2", 2_000L));
+
+        // v11 on an upgrading device: two cached server docs become one canonical row
+        helper.upsertProgressBatch(legacy, true);
+        assertEquals(1, helper.collapseDuplicateProgress());
+
+        // First pull after the upgrade re-reads the not yet deduplicated server docs
+        helper.mergeProgressDelta(Collections.singletonList("child1"),
+                Arrays.asList(progressDoc("autoId1", 1_000L), progressDoc("autoId2", 2_000L)),
+                "child_progress:parent1", 2_000L);
+
+        // The dedup job's local pass must not add them on top again
+        helper.collapseDuplicateProgress();
+
+        ModuleRollup rollup = helper.getModuleRollups(Collections.singletonList("child1")).get(0);
+        assertEquals(2, rollup.getTotalPlays());
+        assertEquals(60_000L, rollup.getTotalTimeSpent());
+        assertEquals(1, helper.getProgressForChildren(Collections.singletonList("child1")).size());
+    }
+}
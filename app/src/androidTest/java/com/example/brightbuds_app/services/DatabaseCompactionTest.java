@@ -0,0 +1,73 @@
+package com.example.brightbuds_app.services;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.brightbuds_app.models.ModuleRollup;
+import com.example.brightbuds_app.models.Progress;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Retention folds old rows into the rollup's archived totals; dashboards
+ * must see the same totals before and after, including when a compacted
+ * document comes back from the server.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseCompactionTest extends ProgressDbTestCase {
+
+    public DatabaseCompactionTest() {
+        super("compaction_test.db");
+    }
+
+    @Test
+    public void compactionKeepsRollupTotals() {
+        SQLiteDatabase db = helper.getWritableDatabase();
+
+        ContentValues recent = progressRow("new", "child1", "m1", 1);
+        recent.put(DatabaseHelper.COLUMN_TIMESTAMP, 1_800_000_000_000L);
+        db.insert(DatabaseHelper.TABLE_CHILD_PROGRESS, null, progressRow("old", "child1", "m1", 1));
+        db.insert(DatabaseHelper.TABLE_CHILD_PROGRESS, null, recent);
+
+        DatabaseCompaction.Result result = helper.compact(1_750_000_000_000L);
+
+        assertEquals(1, result.progressRowsFolded);
+        assertEquals(1, helper.getProgressForChildren(Collections.singletonList("child1")).size());
+        ModuleRollup rollup = helper.getModuleRollups(Collections.singletonList("child1")).get(0);
+        assertEquals(2, rollup.getTotalPlays());
+        assertEquals(60_000L, rollup.getTotalTimeSpent());
+
+        // Removing the last live row keeps the archived history
+        db.delete(DatabaseHelper.TABLE_CHILD_PROGRESS, null, null);
+        assertEquals(1, helper.getModuleRollups(Collections.singletonList("child1")).get(0).getTotalPlays());
+    }
+
+    @Test
+    public void reimportedDocReplacesArchivedTotals() {
+        helper.upsertProgressBatch(Collections.singletonList(canonicalDoc(2, 60_000L, 1_000L)), true);
+        assertEquals(1, helper.compact(1_750_000_000_000L).progressRowsFolded);
+
+        // The server document is cumulative: it already holds the two archived plays
+        helper.upsertChangedProgress(Collections.singletonList("child1"),
+                Collections.singletonList(canonicalDoc(3, 90_000L, 2_000L)));
+
+        ModuleRollup rollup = helper.getModuleRollups(Collections.singletonList("child1")).get(0);
+        assertEquals(3, rollup.getTotalPlays());
+        assertEquals(90_000L, rollup.getTotalTimeSpent());
+        assertTrue(rollup.isCompleted());
+    }
+
+    private Progress canonicalDoc(int plays, long timeSpent, long timestamp) {
+        Progress p = progressDoc(Progress.canonicalId("child1", "m1"), timestamp);
+        p.setTimeSpent(timeSpent);
+        p.setPlays(plays);
+        return p;
+    }
+}
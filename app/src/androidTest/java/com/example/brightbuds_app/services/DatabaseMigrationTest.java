@@ -0,0 +1,88 @@
+package com.example.brightbuds_app.services;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * Schema upgrades only: a populated v3 brightbuds.db must reach the current
+ * version with every row intact, the v4 indexes in place and the v5 module
+ * rollup backfilled, and re-running the steps must be harmless. Feature
+ * behaviour is tested next to each feature (ModuleRollupTest,
+ * DatabaseCompactionTest, CanonicalProgressTest, ...).
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseMigrationTest extends ProgressDbTestCase {
+
+    public DatabaseMigrationTest() {
+        super("migration_test.db");
+    }
+
+    @Test
+    public void upgradeFromV3_keepsRowsAddsIndexesAndBackfillsRollup() {
+        createPopulatedV3Database();
+
+        SQLiteDatabase db = helper.getWritableDatabase();
+
+        assertEquals(11, db.getVersion());
+        assertEquals(2, count(db, DatabaseHelper.TABLE_CHILD_PROGRESS));
+        assertEquals(1, count(db, DatabaseHelper.TABLE_SYNC_QUEUE));
+        assertEquals(1, helper.getUnsyncedProgressDetails().size());
+
+        assertTrue(indexExists(db, DatabaseHelper.INDEX_PROGRESS_SYNC_STATUS));
+        assertTrue(indexExists(db, DatabaseHelper.INDEX_PROGRESS_CHILD_MODULE));
+        assertTrue(indexExists(db, DatabaseHelper.INDEX_PROGRESS_CHILD_TIMESTAMP));
+        assertTrue(indexExists(db, DatabaseHelper.INDEX_SYNC_QUEUE_STATUS_CREATED));
+
+        assertEquals(2, count(db, DatabaseHelper.TABLE_MODULE_ROLLUP));
+    }
+
+    @Test
+    public void migrationsAreIdempotent() {
+        createPopulatedV3Database();
+
+        SQLiteDatabase db = helper.getWritableDatabase();
+
+        // Re-running every step must not fail or touch data
+        DatabaseMigrations.migrate(db, 1, 11);
+        assertEquals(2, count(db, DatabaseHelper.TABLE_CHILD_PROGRESS));
+    }
+
+    private void createPopulatedV3Database() {
+        File path = context.getDatabasePath(databaseName());
+        path.getParentFile().mkdirs();
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(path, null);
+        db.execSQL(DatabaseHelper.CREATE_TABLE_PROGRESS);
+        db.execSQL(DatabaseHelper.CREATE_TABLE_SYNC_QUEUE);
+
+        db.insert(DatabaseHelper.TABLE_CHILD_PROGRESS, null,
+                progressRow("p1", "child1", "game_feed_monster", 1));
+        db.insert(DatabaseHelper.TABLE_CHILD_PROGRESS, null,
+                progressRow("offline_1", "child1", "game_memory_match", 0));
+
+        ContentValues queued = new ContentValues();
+        queued.put(DatabaseHelper.COLUMN_TABLE_NAME, DatabaseHelper.TABLE_CHILD_PROGRESS);
+        queued.put(DatabaseHelper.COLUMN_RECORD_ID, "offline_1");
+        queued.put(DatabaseHelper.COLUMN_OPERATION, "insert");
+        db.insert(DatabaseHelper.TABLE_SYNC_QUEUE, null, queued);
+
+        db.setVersion(3);
+        db.close();
+    }
+
+    private boolean indexExists(SQLiteDatabase db, String name) {
+        try (Cursor c = db.rawQuery(
+                "SELECT 1 FROM sqlite_master WHERE type='index' AND name=?", new String[]{name})) {
+            return c.moveToFirst();
+        }
+    }
+}
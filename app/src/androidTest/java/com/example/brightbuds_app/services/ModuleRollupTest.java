@@ -0,0 +1,53 @@
+package com.example.brightbuds_app.services;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.brightbuds_app.models.ModuleRollup;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * The trigger-maintained child_module_rollup must match the live
+ * child_progress rows through inserts, replaces and deletes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ModuleRollupTest extends ProgressDbTestCase {
+
+    public ModuleRollupTest() {
+        super("module_rollup_test.db");
+    }
+
+    @Test
+    public void rollupTracksInsertsReplacesAndDeletes() {
+        SQLiteDatabase db = helper.getWritableDatabase();
+
+        db.insert(DatabaseHelper.TABLE_CHILD_PROGRESS, null, progressRow("a", "child1", "m1", 0));
+        ContentValues second = progressRow("b", "child1", "m1", 0);
+        second.put(DatabaseHelper.COLUMN_SCORE, 40);
+        db.insert(DatabaseHelper.TABLE_CHILD_PROGRESS, null, second);
+
+        List<ModuleRollup> rollups = helper.getModuleRollups(Collections.singletonList("child1"));
+        assertEquals(1, rollups.size());
+        assertEquals(80, rollups.get(0).getBestScore());
+        assertEquals(2, rollups.get(0).getTotalPlays());
+        assertEquals(60_000L, rollups.get(0).getTotalTimeSpent());
+        assertTrue(rollups.get(0).isCompleted());
+
+        // REPLACE must not double count
+        db.insertWithOnConflict(DatabaseHelper.TABLE_CHILD_PROGRESS, null,
+                progressRow("a", "child1", "m1", 1), SQLiteDatabase.CONFLICT_REPLACE);
+        assertEquals(2, helper.getModuleRollups(Collections.singletonList("child1")).get(0).getTotalPlays());
+
+        db.delete(DatabaseHelper.TABLE_CHILD_PROGRESS, null, null);
+        assertEquals(0, count(db, DatabaseHelper.TABLE_MODULE_ROLLUP));
+    }
+}
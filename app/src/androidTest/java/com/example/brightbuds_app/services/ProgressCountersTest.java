@@ -0,0 +1,63 @@
+package com.example.brightbuds_app.services;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.brightbuds_app.models.CounterDelta;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local plays/timeSpent counters: what CounterSync sends and what a
+ * journal replay may add.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProgressCountersTest extends ProgressDbTestCase {
+
+    public ProgressCountersTest() {
+        super("progress_counters_test.db");
+    }
+
+    @Test
+    public void counterDeltasAccumulateUntilAcked() {
+        helper.addCounterDeltas("child1_m1", "parent1", "child1", "m1", Collections.singletonMap("plays", 1L));
+        helper.addCounterDeltas("child1_m1", "parent1", "child1", "m1", Collections.singletonMap("plays", 2L));
+        List<CounterDelta> pending = helper.getPendingCounters();
+        assertEquals(1, pending.size());
+        assertEquals(3L, pending.get(0).getPending());
+
+        // A play recorded while the flush is in flight stays pending after the ack
+        helper.addCounterDeltas("child1_m1", "parent1", "child1", "m1", Collections.singletonMap("plays", 1L));
+        helper.ackCounters(pending);
+        assertEquals(1L, helper.getPendingCounters().get(0).getPending());
+        assertEquals(4L, helper.getPendingCounters().get(0).getLocalTotal());
+    }
+
+    @Test
+    public void replayedJournalDeltasApplyOnce() {
+        Map<String, Long> session = new HashMap<>();
+        session.put("plays", 1L);
+        session.put("timeSpent", 30_000L);
+        String scope = GameEventJournal.replayScope("child1_m1");
+
+        assertTrue(helper.addCounterDeltas("child1_m1", "parent1", "child1", "m1",
+                session, scope, 2_000L));
+        // Process died before the journal commit: the same events come back
+        assertFalse(helper.addCounterDeltas("child1_m1", "parent1", "child1", "m1",
+                session, scope, 2_000L));
+
+        List<CounterDelta> pending = helper.getPendingCounters();
+        assertEquals(2, pending.size());
+        for (CounterDelta d : pending) {
+            assertEquals("plays".equals(d.getField()) ? 1L : 30_000L, d.getPending());
+        }
+        assertEquals(2_000L, helper.getWatermark(scope));
+    }
+}
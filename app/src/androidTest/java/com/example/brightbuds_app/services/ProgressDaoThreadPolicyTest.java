@@ -0,0 +1,65 @@
+package com.example.brightbuds_app.services;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.brightbuds_app.models.Progress;
+import com.google.android.gms.tasks.Tasks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * With the strict thread policy on, touching the database from the main
+ * thread must fail, while the same work through ProgressDao succeeds.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProgressDaoThreadPolicyTest extends ProgressDbTestCase {
+
+    public ProgressDaoThreadPolicyTest() {
+        super("dao_thread_policy_test.db");
+    }
+
+    @Before
+    public void enableStrictThreadPolicy() {
+        DatabaseHelper.setStrictThreadPolicy(true);
+    }
+
+    @After
+    public void disableStrictThreadPolicy() {
+        DatabaseHelper.setStrictThreadPolicy(false);
+    }
+
+    @Test
+    public void mainThreadAccess_throws() {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            try {
+                helper.countUnsynced();
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        assertTrue(failure.get() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void daoAccess_runsOffMainThread() throws Exception {
+        ProgressDao dao = new ProgressDao(helper);
+
+        Tasks.await(dao.upsertProgress("p1", "parent", "child", "module",
+                80, "completed", 1_000L, 0L, false), 5, TimeUnit.SECONDS);
+
+        List<Progress> unsynced = Tasks.await(dao.getUnsyncedProgressDetails(), 5, TimeUnit.SECONDS);
+        assertEquals(1, unsynced.size());
+        assertEquals("p1", unsynced.get(0).getProgressId());
+    }
+}
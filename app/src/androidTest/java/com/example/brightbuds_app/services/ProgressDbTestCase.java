@@ -0,0 +1,89 @@
+package com.example.brightbuds_app.services;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.brightbuds_app.models.Progress;
+
+import org.junit.After;
+import org.junit.Before;
+
+/**
+ * Shared fixture for tests against a throwaway local database: each test
+ * gets a fresh DatabaseHelper on its own file, which is deleted afterwards.
+ * The helper is not opened here, so a test can lay down an older schema
+ * first; anything that touches it opens and upgrades it.
+ *
+ * Row and document factories describe one play of module m1 by child1
+ * (score 80, completed, 30s); tests override only the fields they check.
+ */
+public abstract class ProgressDbTestCase {
+
+    protected static final long BASE_TIMESTAMP = 1_700_000_000_000L;
+
+    private final String databaseName;
+
+    protected Context context;
+    protected DatabaseHelper helper;
+
+    protected ProgressDbTestCase(String databaseName) {
+        this.databaseName = databaseName;
+    }
+
+    @Before
+    public void openHelper() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(databaseName);
+        helper = new DatabaseHelper(context, databaseName);
+    }
+
+    @After
+    public void deleteDatabase() {
+        helper.close();
+        context.deleteDatabase(databaseName);
+    }
+
+    protected String databaseName() {
+        return databaseName;
+    }
+
+    /** A raw child_progress row, for inserting below DatabaseHelper's own writes */
+    protected static ContentValues progressRow(String id, String childId, String moduleId, int synced) {
+        ContentValues v = new ContentValues();
+        v.put(DatabaseHelper.COLUMN_PROGRESS_ID, id);
+        v.put(DatabaseHelper.COLUMN_PARENT_ID, "parent1");
+        v.put(DatabaseHelper.COLUMN_CHILD_ID, childId);
+        v.put(DatabaseHelper.COLUMN_MODULE_ID, moduleId);
+        v.put(DatabaseHelper.COLUMN_SCORE, 80);
+        v.put(DatabaseHelper.COLUMN_STATUS, "completed");
+        v.put(DatabaseHelper.COLUMN_TIMESTAMP, BASE_TIMESTAMP);
+        v.put(DatabaseHelper.COLUMN_TIME_SPENT, 30_000L);
+        v.put(DatabaseHelper.COLUMN_SYNC_STATUS, synced);
+        return v;
+    }
+
+    /** The same play as a server document, as a pull would hand it over */
+    protected static Progress progressDoc(String id, long timestamp) {
+        Progress p = new Progress();
+        p.setProgressId(id);
+        p.setParentId("parent1");
+        p.setChildId("child1");
+        p.setModuleId("m1");
+        p.setScore(80);
+        p.setStatus("completed");
+        p.setTimestamp(timestamp);
+        p.setTimeSpent(30_000L);
+        p.setPlays(1);
+        return p;
+    }
+
+    protected static long count(SQLiteDatabase db, String table) {
+        try (Cursor c = db.rawQuery("SELECT COUNT(*) FROM " + table, null)) {
+            return c.moveToFirst() ? c.getLong(0) : 0;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.brightbuds_app.services;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.brightbuds_app.models.Progress;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Delta pulls merge only changed server rows and keep a per-scope
+ * high-watermark that never moves backwards.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProgressDeltaMergeTest extends ProgressDbTestCase {
+
+    public ProgressDeltaMergeTest() {
+        super("delta_merge_test.db");
+    }
+
+    @Test
+    public void deltaMergeAdvancesWatermarkOnlyForward() {
+        assertEquals(0L, helper.getWatermark("child_progress:parent1"));
+
+        helper.upsertProgressBatch(Collections.singletonList(progress("a", 80)), true);
+        List<Progress> server = Collections.singletonList(progress("a", 95));
+
+        assertEquals(1, helper.mergeProgressDelta(Collections.singletonList("child1"),
+                server, "child_progress:parent1", 2_000L).size());
+        assertEquals(2_000L, helper.getWatermark("child_progress:parent1"));
+
+        // Re-reading the overlap window changes nothing and never moves the watermark back
+        assertEquals(0, helper.mergeProgressDelta(Collections.singletonList("child1"),
+                server, "child_progress:parent1", 1_000L).size());
+        assertEquals(2_000L, helper.getWatermark("child_progress:parent1"));
+    }
+
+    private Progress progress(String id, int score) {
+        Progress p = new Progress();
+        p.setProgressId(id);
+        p.setParentId("parent1");
+        p.setChildId("child1");
+        p.setModuleId("m1");
+        p.setScore(score);
+        p.setStatus("completed");
+        p.setTimestamp(1_700_000_000_000L);
+        return p;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.brightbuds_app.services;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.brightbuds_app.models.Progress;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Rows the server keeps rejecting leave the upload queue after
+ * maxAttempts instead of blocking every sync.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SyncQuarantineTest extends ProgressDbTestCase {
+
+    public SyncQuarantineTest() {
+        super("sync_quarantine_test.db");
+    }
+
+    @Test
+    public void rejectedRowsAreQuarantinedAfterMaxAttempts() {
+        SQLiteDatabase db = helper.getWritableDatabase();
+
+        db.insert(DatabaseHelper.TABLE_CHILD_PROGRESS, null, progressRow("bad", "child1", "m1", 0));
+        List<Progress> rejected = helper.getUnsyncedProgressDetails();
+
+        assertEquals(0, helper.recordProgressSyncFailures(rejected, 2));
+        assertEquals(1, helper.countUnsynced());
+        assertEquals(1, helper.recordProgressSyncFailures(rejected, 2));
+        assertEquals(0, helper.countUnsynced());
+        assertEquals(1, helper.countQuarantinedProgress());
+
+        // Rewriting the row locally gives it a fresh start
+        helper.upsertProgressBatch(Collections.singletonList(rejected.get(0)), false);
+        assertEquals(1, helper.countUnsynced());
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.brightbuds_app.utils;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares v1 (AES-CBC) and v2 (AES-GCM) round-trip throughput on the
+ * device running the tests. The numbers are logged under CryptoBenchmark;
+ * only the round trips themselves are asserted.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CryptoBenchmarkTest {
+
+    private static final String TAG = "CryptoBenchmark";
+    private static final int WARM_UP = 50;
+    private static final int ITERATIONS = 1_000;
+    private static final int PAYLOAD_CHARS = 64;
+
+    private String payload;
+
+    @Before
+    public void setUp() throws Exception {
+        char[] chars = new char[PAYLOAD_CHARS];
+        Arrays.fill(chars, 'x');
+        payload = new String(chars);
+        KeyManager.getKey(); // keep PBKDF2 out of the measurement
+    }
+
+    @Test
+    public void gcmAndCbcRoundTrip() throws Exception {
+        assertEquals(payload, EncryptionUtil.decryptCbc(EncryptionUtil.encryptCbc(payload)));
+        assertEquals(payload, EncryptionUtil.decryptGcm(EncryptionUtil.encryptGcm(payload)));
+
+        // Warm-up pass so JIT and provider init don't skew the first mode
+        roundTripCbc(WARM_UP);
+        roundTripGcm(WARM_UP);
+
+        long cbcNs = roundTripCbc(ITERATIONS);
+        long gcmNs = roundTripGcm(ITERATIONS);
+
+        Log.i(TAG, String.format(Locale.US,
+                "%d x %d chars | CBC %.1f ops/s | GCM %.1f ops/s | GCM/CBC %.2fx",
+                ITERATIONS, PAYLOAD_CHARS,
+                opsPerSecond(cbcNs), opsPerSecond(gcmNs),
+                cbcNs / (double) Math.max(1, gcmNs)));
+    }
+
+    private long roundTripCbc(int iterations) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            EncryptionUtil.decryptCbc(EncryptionUtil.encryptCbc(payload));
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long roundTripGcm(int iterations) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            EncryptionUtil.decryptGcm(EncryptionUtil.encryptGcm(payload));
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static double opsPerSecond(long nanos) {
+        return ITERATIONS / (Math.max(1, nanos) / 1_000_000_000.0);
+    }
+}
@@ -3,6 +3,11 @@ package com.example.brightbuds_app;
 import android.app.Application;
 import android.util.Log;
 
+import com.example.brightbuds_app.services.DatabaseCompactionJobService;
+import com.example.brightbuds_app.services.ProgressDeduplicationJobService;
+import com.example.brightbuds_app.services.SyncJobService;
+import com.example.brightbuds_app.utils.KeyManager;
+import com.example.brightbuds_app.utils.SecurePreferences;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
 
@@ -27,6 +32,19 @@ public class BrightBudsApp extends Application {
             Log.e("BrightBudsApp", "❌ Firebase initialization failed", e);
         }
 
+        // Derive the encryption key off the main thread so first decrypts don't block the UI
+        KeyManager.warmUpAsync();
+        SecurePreferences.preloadAsync(this);
+
+        // Keep brightbuds.db within the offline retention window
+        DatabaseCompactionJobService.schedule(this);
+
+        // Upload offline progress in the background, whichever screen is open
+        SyncJobService.schedule(this);
+
+        // Merge progress docs written under pre-canonical ids, once per parent
+        ProgressDeduplicationJobService.schedule(this);
+
         // Optional: You can add crash logging, analytics, or performance monitoring here.
     }
 }
@@ -15,20 +15,20 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import com.bumptech.glide.Glide;
 import com.example.brightbuds_app.R;
+import com.example.brightbuds_app.utils.StreamingEncryption;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.FirebaseFirestore;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * FamilyManagementActivity:
  * Allows parents to add new family members locally.
- *   - Photos are stored ONLY on the parent’s device (no Firebase Storage).
+ *   - Photos are stored ONLY on the parent’s device (no Firebase Storage), encrypted at rest.
  *   - Firestore stores only text data and local file path.
  *   - Fully COPPA-compliant — no image upload to cloud.
  */
@@ -106,15 +106,13 @@ public class FamilyManagementActivity extends AppCompatActivity {
             File dir = new File(getExternalFilesDir("MyFamily"), "");
             if (!dir.exists()) dir.mkdirs();
 
-            // Step 2: Copy selected photo into app storage
+            // Step 2: Stream the selected photo into app storage, encrypted chunk by chunk
             String fileName = name.replaceAll("\\s+", "_") + "_" + System.currentTimeMillis() + ".jpg";
             File localFile = new File(dir, fileName);
 
-            try (InputStream in = getContentResolver().openInputStream(imageUri);
-                 OutputStream out = new FileOutputStream(localFile)) {
-                byte[] buffer = new byte[1024];
-                int len;
-                while ((len = in.read(buffer)) > 0) out.write(buffer, 0, len);
+            try (InputStream in = getContentResolver().openInputStream(imageUri)) {
+                if (in == null) throw new IOException("Cannot open selected image");
+                StreamingEncryption.encryptToFile(in, localFile);
             }
 
             // Step 3: Save metadata (no image upload)
@@ -5,6 +5,7 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.text.InputType;
 import android.text.TextUtils;
+import android.util.Log;
 import android.util.Patterns;
 import android.widget.EditText;
 import android.widget.TextView;
@@ -13,7 +14,10 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.brightbuds_app.R;
+import com.example.brightbuds_app.interfaces.DataCallbacks;
 import com.example.brightbuds_app.services.AuthServices;
+import com.example.brightbuds_app.services.EncryptionMigrationService;
+import com.example.brightbuds_app.services.ProgressDeduplicationJobService;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.android.material.textfield.TextInputEditText;
@@ -87,6 +91,9 @@ public class LoginActivity extends AppCompatActivity {
     /** Handles post-login behavior */
     private void handleLoginSuccess(FirebaseUser user) {
         if (user.isEmailVerified()) {
+            startEncryptionMigration(user.getUid());
+            // The launch-time schedule is dropped while nobody is signed in
+            ProgressDeduplicationJobService.schedule(this);
             Toast.makeText(this, "Welcome back!", Toast.LENGTH_SHORT).show();
             Intent intent = new Intent(this, RoleSelectionActivity.class);
             intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
@@ -97,6 +104,21 @@ public class LoginActivity extends AppCompatActivity {
         }
     }
 
+    /** Upgrades this family's legacy CBC fields to the GCM format in the background */
+    private void startEncryptionMigration(String parentId) {
+        new EncryptionMigrationService().migrateParentData(parentId, new DataCallbacks.GenericCallback() {
+            @Override
+            public void onSuccess(String result) {
+                Log.i("LoginActivity", "Encryption migration: " + result);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.w("LoginActivity", "Encryption migration deferred: " + e.getMessage());
+            }
+        });
+    }
+
     /** Dialog shown for unverified users */
     private void showEmailVerificationDialog(FirebaseUser user) {
         new MaterialAlertDialogBuilder(this)
@@ -113,7 +135,7 @@ public class LoginActivity extends AppCompatActivity {
                             });
                 })
                 .setNegativeButton("OK", (dialog, which) -> {
-                    auth.signOut(); // Prevent access without verification
+                    authServices.logout(); // Prevent access without verification
                     dialog.dismiss();
                 })
                 .show();
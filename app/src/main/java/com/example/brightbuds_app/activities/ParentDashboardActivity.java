@@ -24,8 +24,9 @@ import com.bumptech.glide.Glide;
 import com.bumptech.glide.load.resource.bitmap.CircleCrop;
 import com.example.brightbuds_app.R;
 import com.example.brightbuds_app.interfaces.DataCallbacks;
-import com.example.brightbuds_app.interfaces.ProgressListCallback;
+import com.example.brightbuds_app.interfaces.CachedProgressCallback;
 import com.example.brightbuds_app.models.ChildProfile;
+import com.example.brightbuds_app.models.ModuleRollup;
 import com.example.brightbuds_app.models.Progress;
 import com.example.brightbuds_app.services.AuthServices;
 import com.example.brightbuds_app.services.ChildProfileService;
@@ -65,6 +66,10 @@ public class ParentDashboardActivity extends AppCompatActivity {
 
     private boolean isLoadingChildren = false;
 
+    // Bumped on every load, so cached and revalidated callbacks from an
+    // earlier load can tell they are stale and drop their results
+    private int loadGeneration = 0;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -187,26 +192,26 @@ public class ParentDashboardActivity extends AppCompatActivity {
                 List<String> childIds = new ArrayList<>();
                 for (ChildProfile child : children) childIds.add(child.getChildId());
 
-                progressService.getAllProgressForParentWithChildren(parentId, childIds, new ProgressListCallback() {
+                final int generation = ++loadGeneration;
+                progressService.getProgressForParentCachedFirst(parentId, childIds, new CachedProgressCallback() {
+                    @Override
+                    public void onCached(List<Progress> cachedList) {
+                        if (generation != loadGeneration) return;
+                        Log.d(TAG, "Rendering " + cachedList.size() + " cached progress records");
+                        renderChildCards(children, childIds);
+                    }
+
                     @Override
-                    public void onSuccess(List<Progress> progressList) {
-                        Log.d(TAG, "Loaded " + progressList.size() + " progress records");
-
-                        for (ChildProfile child : children) {
-                            childrenContainer.addView(createChildCard(child, progressList));
-                        }
-                        loadModuleOverviewChart(progressList);
-                        isLoadingChildren = false;
+                    public void onRevalidated(List<Progress> changedList) {
+                        if (generation != loadGeneration || changedList.isEmpty()) return;
+                        Log.d(TAG, "Refreshing dashboard with " + changedList.size() + " changed records");
+                        renderChildCards(children, childIds);
                     }
 
                     @Override
                     public void onFailure(Exception e) {
-                        Log.e(TAG, "Failed to load progress", e);
-                        for (ChildProfile child : children) {
-                            childrenContainer.addView(createChildCard(child, new ArrayList<>()));
-                        }
-                        loadModuleOverviewChart(new ArrayList<>());
-                        isLoadingChildren = false;
+                        // Cached data is already on screen; nothing else to show
+                        Log.e(TAG, "Failed to refresh progress", e);
                     }
                 });
             }
@@ -224,7 +229,46 @@ public class ParentDashboardActivity extends AppCompatActivity {
         });
     }
 
-    private void loadModuleOverviewChart(List<Progress> progressList) {
+    /**
+     * Child cards and the overview chart read the per-module rollup: at most
+     * one row per module per child, including history already compacted
+     * out of child_progress.
+     */
+    private void renderChildCards(List<ChildProfile> children, List<String> childIds) {
+        progressService.getModuleRollups(childIds, new DataCallbacks.GenericListCallback<ModuleRollup>() {
+            @Override
+            public void onSuccess(List<ModuleRollup> rollups) {
+                loadModuleOverviewChart(rollups);
+                childrenContainer.removeAllViews();
+                Map<String, List<ModuleRollup>> byChild = new HashMap<>();
+                for (ModuleRollup r : rollups) {
+                    List<ModuleRollup> list = byChild.get(r.getChildId());
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        byChild.put(r.getChildId(), list);
+                    }
+                    list.add(r);
+                }
+                for (ChildProfile child : children) {
+                    List<ModuleRollup> childRollups = byChild.get(child.getChildId());
+                    childrenContainer.addView(createChildCard(child,
+                            childRollups != null ? childRollups : new ArrayList<>()));
+                }
+                isLoadingChildren = false;
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                childrenContainer.removeAllViews();
+                for (ChildProfile child : children) {
+                    childrenContainer.addView(createChildCard(child, new ArrayList<>()));
+                }
+                isLoadingChildren = false;
+            }
+        });
+    }
+
+    private void loadModuleOverviewChart(List<ModuleRollup> rollups) {
         BarChart chart = findViewById(R.id.moduleOverviewChart);
         if (chart == null) return;
 
@@ -241,23 +285,20 @@ public class ParentDashboardActivity extends AppCompatActivity {
         Map<String, Integer> moduleValues = new HashMap<>();
         for (String module : moduleTypes.keySet()) moduleValues.put(module, 0);
 
-        Log.d(TAG, "Progress list size: " + progressList.size());
+        Log.d(TAG, "Module rollups: " + rollups.size());
 
-        for (Progress progress : progressList) {
-            String moduleId = progress.getModuleId();
+        // Videos chart total plays across children; games chart the best score
+        for (ModuleRollup rollup : rollups) {
+            String moduleId = rollup.getModuleId();
             if (moduleId == null || !moduleTypes.containsKey(moduleId)) continue;
 
-            String type = progress.getType() != null ? progress.getType() : moduleTypes.get(moduleId);
-
-            if ("video".equals(type)) {
-                int plays = progress.getPlays();
-                moduleValues.put(moduleId, moduleValues.get(moduleId) + (plays > 0 ? plays : 1));
+            if ("video".equals(moduleTypes.get(moduleId))) {
+                moduleValues.put(moduleId, moduleValues.get(moduleId) + rollup.getTotalPlays());
             } else {
-                int score = (int) Math.round(progress.getScore());
-                moduleValues.put(moduleId, Math.max(moduleValues.get(moduleId), score));
+                moduleValues.put(moduleId, Math.max(moduleValues.get(moduleId), rollup.getBestScore()));
             }
 
-            Log.d(TAG, "Module=" + moduleId + " | Type=" + type + " | Plays=" + progress.getPlays() + " | Score=" + progress.getScore());
+            Log.d(TAG, "Module=" + moduleId + " | Plays=" + rollup.getTotalPlays() + " | Best=" + rollup.getBestScore());
         }
 
         List<BarEntry> entries = new ArrayList<>();
@@ -340,7 +381,7 @@ public class ParentDashboardActivity extends AppCompatActivity {
         }
     }
 
-    private CardView createChildCard(ChildProfile child, List<Progress> progressList) {
+    private CardView createChildCard(ChildProfile child, List<ModuleRollup> moduleRollups) {
         CardView card = (CardView) getLayoutInflater().inflate(R.layout.item_child_card_attractive, childrenContainer, false);
 
         ImageView avatar = card.findViewById(R.id.imgChildAvatar);
@@ -369,19 +410,13 @@ public class ParentDashboardActivity extends AppCompatActivity {
         int completedModules = 0;
         int starsEarned = 0;
 
-        if (progressList != null && !progressList.isEmpty()) {
-            for (Progress p : progressList) {
-                if (p == null || p.getModuleId() == null || !p.getChildId().equals(child.getChildId())) continue;
-
-                if ("video".equalsIgnoreCase(p.getType()) && p.getPlays() > 0) {
-                    completedModules++;
-                } else if (p.getScore() > 0) {
-                    completedModules++;
-                }
+        for (ModuleRollup r : moduleRollups) {
+            if (r.isCompleted() || r.getBestScore() > 0) {
+                completedModules++;
+            }
 
-                if (p.getScore() >= 80) {
-                    starsEarned++;
-                }
+            if (r.getBestScore() >= 80) {
+                starsEarned++;
             }
         }
 
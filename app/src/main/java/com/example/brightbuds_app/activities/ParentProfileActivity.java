@@ -16,6 +16,7 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import com.bumptech.glide.Glide;
 import com.example.brightbuds_app.R;
+import com.example.brightbuds_app.services.AuthServices;
 import com.example.brightbuds_app.utils.EncryptionUtil;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.card.MaterialCardView;
@@ -149,7 +150,7 @@ public class ParentProfileActivity extends AppCompatActivity {
         btnTermsConditions.setOnClickListener(v ->
                 startActivity(new Intent(this, TermsConditionsActivity.class)));
         btnLogout.setOnClickListener(v -> {
-            auth.signOut();
+            new AuthServices(this).logout();
             Intent i = new Intent(this, LandingActivity.class);
             i.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
             startActivity(i);
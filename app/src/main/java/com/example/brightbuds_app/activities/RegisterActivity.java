@@ -110,7 +110,7 @@ public class RegisterActivity extends AppCompatActivity {
                 db.collection("users").document(uid)
                         .set(data)
                         .addOnSuccessListener(unused -> {
-                            firebaseAuth.signOut(); // Require verification before login
+                            authService.logout(); // Require verification before login
                             registerButton.setEnabled(true);
                             registerButton.setText("Create Account");
 
@@ -10,8 +10,14 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.brightbuds_app.R;
+import com.example.brightbuds_app.interfaces.DataCallbacks;
+import com.example.brightbuds_app.interfaces.ProgressPageCallback;
 import com.example.brightbuds_app.models.Progress;
+import com.example.brightbuds_app.models.ProgressPage;
 import com.example.brightbuds_app.services.PDFReportService;
+import com.example.brightbuds_app.services.ProgressService;
+import com.example.brightbuds_app.utils.BatchDecryptor;
+import com.example.brightbuds_app.utils.Constants;
 import com.example.brightbuds_app.utils.EncryptionUtil;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
@@ -31,6 +37,7 @@ public class ReportGenerationActivity extends AppCompatActivity {
 
     private final FirebaseFirestore db = FirebaseFirestore.getInstance();
     private final FirebaseAuth auth = FirebaseAuth.getInstance();
+    private ProgressService progressService;
 
     private String filterChildId;
     private String parentName = "Parent User";
@@ -44,6 +51,7 @@ public class ReportGenerationActivity extends AppCompatActivity {
         setContentView(R.layout.activity_report_generation);
 
         txtReportStatus = findViewById(R.id.txtReportStatus);
+        progressService = new ProgressService(this);
         filterChildId = getIntent().getStringExtra("childId");
 
         FirebaseUser user = auth.getCurrentUser();
@@ -123,13 +131,13 @@ public class ReportGenerationActivity extends AppCompatActivity {
     }
 
     private void loadChildAndParentDataForAdminReport(List<Progress> progressList) {
-        db.collection("child_profiles").get().addOnSuccessListener(childrenSnap -> {
-            Map<String, String> childNames = extractChildNames(childrenSnap);
-            db.collection("users").get().addOnSuccessListener(usersSnap -> {
-                Map<String, String> parentNames = extractParentNames(usersSnap);
-                generateAdminPDFReport(progressList, childNames, parentNames);
-            }).addOnFailureListener(this::handleParentDataLoadError);
-        }).addOnFailureListener(this::handleChildDataLoadError);
+        db.collection("child_profiles").get().addOnSuccessListener(childrenSnap ->
+                extractChildNames(childrenSnap, childNames ->
+                        db.collection("users").get().addOnSuccessListener(usersSnap ->
+                                extractParentNames(usersSnap, parentNames ->
+                                        generateAdminPDFReport(progressList, childNames, parentNames))
+                        ).addOnFailureListener(this::handleParentDataLoadError))
+        ).addOnFailureListener(this::handleChildDataLoadError);
     }
 
     private void generateAdminPDFReport(List<Progress> progressList,
@@ -153,7 +161,7 @@ public class ReportGenerationActivity extends AppCompatActivity {
                     @Override
                     public void onSuccess(String filePath) {
                         handleReportSuccess("✅ Admin report saved:\n" + filePath,
-                                "Admin report generated successfully!");
+                                "Admin report generated successfully!", filePath);
                     }
 
                     @Override
@@ -176,28 +184,65 @@ public class ReportGenerationActivity extends AppCompatActivity {
                         handleNoChildrenFound();
                         return;
                     }
-                    Map<String, String> childNames = extractChildNames(childrenSnap);
-                    loadProgressDataForParentReport(userId, email, childNames);
+                    extractChildNames(childrenSnap, childNames ->
+                            loadProgressDataForParentReport(userId, email, childNames));
                 })
                 .addOnFailureListener(this::handleChildrenLoadError);
     }
 
+    /**
+     * Reads the history page by page instead of in one get(). A "childId"
+     * extra limits the report to that child. Older documents were owned by
+     * the parent's email, so those pages are read too.
+     */
     private void loadProgressDataForParentReport(String userId, String email, Map<String, String> childNames) {
-        Query progressQuery = buildParentProgressQuery(userId, email);
+        List<Progress> progressList = new ArrayList<>();
+        Runnable build = () -> buildParentReport(progressList, childNames);
+
+        if (filterChildId != null) {
+            loadProgressPages("childId", filterChildId, null, progressList, build);
+        } else if (email != null && !email.isEmpty()) {
+            loadProgressPages("parentId", userId, null, progressList, () ->
+                    loadProgressPages("parentId", email, null, progressList, build));
+        } else {
+            loadProgressPages("parentId", userId, null, progressList, build);
+        }
+    }
 
-        progressQuery.get().addOnSuccessListener(progressSnap -> {
-            List<Progress> progressList = extractProgressRecords(progressSnap);
-            if (progressList.isEmpty()) {
-                handleNoProgressDataFound();
-                return;
+    private void loadProgressPages(String ownerField, String ownerId, ProgressPage.Key after,
+                                   List<Progress> into, Runnable done) {
+        ProgressPageCallback onPage = new ProgressPageCallback() {
+            @Override
+            public void onSuccess(ProgressPage page) {
+                into.addAll(page.getItems());
+                if (page.hasMore()) loadProgressPages(ownerField, ownerId, page.getNextKey(), into, done);
+                else done.run();
             }
 
-            for (Progress p : progressList) {
-                if (p.getModuleId() != null) p.setModuleId(getModuleTitle(p.getModuleId()));
+            @Override
+            public void onFailure(Exception e) {
+                handleProgressLoadError(e);
             }
+        };
 
-            generateParentPDFReport(progressList, childNames);
-        }).addOnFailureListener(this::handleProgressLoadError);
+        if ("childId".equals(ownerField)) {
+            progressService.getChildProgressPage(ownerId, after, Constants.PROGRESS_PAGE_SIZE_MAX, onPage);
+        } else {
+            progressService.getParentProgressPage(ownerId, after, Constants.PROGRESS_PAGE_SIZE_MAX, onPage);
+        }
+    }
+
+    private void buildParentReport(List<Progress> progressList, Map<String, String> childNames) {
+        if (progressList.isEmpty()) {
+            handleNoProgressDataFound();
+            return;
+        }
+
+        for (Progress p : progressList) {
+            if (p.getModuleId() != null) p.setModuleId(getModuleTitle(p.getModuleId()));
+        }
+
+        generateParentPDFReport(progressList, childNames);
     }
 
     private void generateParentPDFReport(List<Progress> progressList, Map<String, String> childNames) {
@@ -214,7 +259,7 @@ public class ReportGenerationActivity extends AppCompatActivity {
                     @Override
                     public void onSuccess(String filePath) {
                         handleReportSuccess("✅ Family report saved:\n" + filePath,
-                                "Family report generated successfully!");
+                                "Family report generated successfully!", filePath);
                     }
 
                     @Override
@@ -234,14 +279,6 @@ public class ReportGenerationActivity extends AppCompatActivity {
         return baseQuery;
     }
 
-    private Query buildParentProgressQuery(String userId, String email) {
-        if (email != null && !email.isEmpty()) {
-            return db.collection("child_progress")
-                    .whereIn("parentId", Arrays.asList(userId, email));
-        }
-        return db.collection("child_progress").whereEqualTo("parentId", userId);
-    }
-
     private List<Progress> extractProgressRecords(QuerySnapshot snapshot) {
         return snapshot.getDocuments().stream()
                 .map(doc -> doc.toObject(Progress.class))
@@ -249,22 +286,40 @@ public class ReportGenerationActivity extends AppCompatActivity {
                 .collect(Collectors.toList());
     }
 
-    private Map<String, String> extractChildNames(QuerySnapshot snapshot) {
-        Map<String, String> names = new HashMap<>();
-        for (var doc : snapshot.getDocuments()) {
-            String decrypted = EncryptionUtil.decrypt(doc.getString("name"));
-            names.put(doc.getId(), (decrypted != null && !decrypted.isEmpty()) ? decrypted : "Child");
-        }
-        return names;
+    private void extractChildNames(QuerySnapshot snapshot, NamesCallback callback) {
+        decryptNames(snapshot, "name", "Child", callback);
     }
 
-    private Map<String, String> extractParentNames(QuerySnapshot snapshot) {
-        Map<String, String> names = new HashMap<>();
-        for (var doc : snapshot.getDocuments()) {
-            String decrypted = EncryptionUtil.decrypt(doc.getString("fullName"));
-            names.put(doc.getId(), (decrypted != null && !decrypted.isEmpty()) ? decrypted : "Parent");
-        }
-        return names;
+    private void extractParentNames(QuerySnapshot snapshot, NamesCallback callback) {
+        decryptNames(snapshot, "fullName", "Parent", callback);
+    }
+
+    /** Decrypts one field across all docs on the worker pool, keyed by doc id */
+    private void decryptNames(QuerySnapshot snapshot, String field, String fallback, NamesCallback callback) {
+        List<DocumentSnapshot> docs = snapshot.getDocuments();
+        List<String> encrypted = new ArrayList<>(docs.size());
+        for (DocumentSnapshot doc : docs) encrypted.add(doc.getString(field));
+
+        BatchDecryptor.decryptAllAsync(encrypted, new DataCallbacks.GenericListCallback<String>() {
+            @Override
+            public void onSuccess(List<String> plain) {
+                Map<String, String> names = new HashMap<>();
+                for (int i = 0; i < docs.size(); i++) {
+                    String decrypted = plain.get(i);
+                    names.put(docs.get(i).getId(), (decrypted != null && !decrypted.isEmpty()) ? decrypted : fallback);
+                }
+                callback.onNames(names);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                handleReportFailure("❌ Failed to decrypt names: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    private interface NamesCallback {
+        void onNames(Map<String, String> names);
     }
 
     private String getModuleTitle(String id) {
@@ -297,10 +352,12 @@ public class ReportGenerationActivity extends AppCompatActivity {
         progressDialog.show();
     }
 
-    private void handleReportSuccess(String text, String toast) {
+    private void handleReportSuccess(String text, String toast, String filePath) {
         runOnUiThread(() -> {
             progressDialog.dismiss();
-            txtReportStatus.setText(text);
+            txtReportStatus.setText(text + "\n\nTap to open");
+            // Reports are encrypted on disk; open them through the decrypting provider
+            txtReportStatus.setOnClickListener(v -> new PDFReportService(this).openReport(filePath));
             Toast.makeText(this, toast, Toast.LENGTH_SHORT).show();
         });
     }
@@ -15,12 +15,15 @@ import androidx.cardview.widget.CardView;
 import com.example.brightbuds_app.R;
 import com.example.brightbuds_app.interfaces.DataCallbacks;
 import com.example.brightbuds_app.models.ChildProfile;
+import com.example.brightbuds_app.services.AuthServices;
 import com.example.brightbuds_app.services.ChildProfileService;
+import com.example.brightbuds_app.utils.BatchDecryptor;
 import com.example.brightbuds_app.utils.EncryptionUtil;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.FirebaseFirestore;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -105,18 +108,37 @@ public class RoleSelectionActivity extends AppCompatActivity {
 
     /** Display decrypted children with accurate progress and stars */
     private void displayChildrenProfiles(List<ChildProfile> children) {
+        List<String> encryptedNames = new ArrayList<>(children.size());
+        for (ChildProfile child : children) encryptedNames.add(child.getName());
+
+        BatchDecryptor.decryptAllAsync(encryptedNames, new DataCallbacks.GenericListCallback<String>() {
+            @Override
+            public void onSuccess(List<String> decryptedNames) {
+                if (isFinishing()) return;
+                renderChildrenProfiles(children, decryptedNames);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.e(TAG, "❌ Failed to decrypt child names", e);
+                showErrorState();
+            }
+        });
+    }
+
+    private void renderChildrenProfiles(List<ChildProfile> children, List<String> decryptedNames) {
         LayoutInflater inflater = LayoutInflater.from(this);
         profilesContainer.removeAllViews();
 
-        for (ChildProfile child : children) {
+        for (int i = 0; i < children.size(); i++) {
+            ChildProfile child = children.get(i);
             CardView card = (CardView) inflater.inflate(R.layout.item_child_selection_card, profilesContainer, false);
             TextView txtChildName = card.findViewById(R.id.txtChildName);
             TextView txtLearningLevel = card.findViewById(R.id.txtLearningLevel);
             TextView txtStars = card.findViewById(R.id.txtStars);
             TextView txtProgress = card.findViewById(R.id.txtProgress);
 
-            // Decrypt the name safely
-            String decryptedName = EncryptionUtil.decrypt(child.getName());
+            String decryptedName = decryptedNames.get(i);
             String displayName = (decryptedName != null && !decryptedName.isEmpty())
                     ? decryptedName
                     : (child.getDisplayName() != null ? child.getDisplayName() : "Child");
@@ -202,7 +224,7 @@ public class RoleSelectionActivity extends AppCompatActivity {
 
     private void showEmailVerificationRequired() {
         Toast.makeText(this, "Please verify your email before continuing", Toast.LENGTH_LONG).show();
-        FirebaseAuth.getInstance().signOut();
+        new AuthServices(this).logout();
         startActivity(new Intent(this, LandingActivity.class));
         finish();
     }
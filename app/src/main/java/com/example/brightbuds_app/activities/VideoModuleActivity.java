@@ -26,11 +26,6 @@ import com.example.brightbuds_app.R;
 import com.example.brightbuds_app.services.ProgressService;
 import com.example.brightbuds_app.services.StorageService;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.FirebaseFirestore;
-
-import java.util.HashMap;
-import java.util.Map;
 
 public class VideoModuleActivity extends AppCompatActivity {
 
@@ -173,58 +168,24 @@ public class VideoModuleActivity extends AppCompatActivity {
         }
     }
 
-    /** Log video play count in Firestore */
+    /** Log video play count; the play is counted on this device and pushed as an increment */
     private void logVideoPlay() {
         if (childId == null || moduleId == null) return;
+        if (FirebaseAuth.getInstance().getCurrentUser() == null) return;
 
-        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
-        if (user == null) return;
-        String parentId = user.getUid();
-
-        FirebaseFirestore db = FirebaseFirestore.getInstance();
-
-        db.collection("child_progress")
-                .whereEqualTo("parentId", parentId)
-                .whereEqualTo("childId", childId)
-                .whereEqualTo("moduleId", moduleId)
-                .get()
-                .addOnSuccessListener(snapshot -> {
-                    if (!snapshot.isEmpty()) {
-                        // Update existing record
-                        String docId = snapshot.getDocuments().get(0).getId();
-                        Long currentPlays = snapshot.getDocuments().get(0).getLong("plays");
-                        int newPlays = (currentPlays != null ? currentPlays.intValue() : 0) + 1;
-
-                        db.collection("child_progress").document(docId)
-                                .update("plays", newPlays,
-                                        "type", "video",
-                                        "status", "completed",
-                                        "timestamp", System.currentTimeMillis())
-                                .addOnSuccessListener(aVoid -> {
-                                    Log.d(TAG, "🎬 Play updated: " + newPlays);
-                                    saveProgress();
-                                });
-                    } else {
-                        // Create new record
-                        Map<String, Object> data = new HashMap<>();
-                        data.put("parentId", parentId);
-                        data.put("childId", childId);
-                        data.put("moduleId", moduleId);
-                        data.put("plays", 1);
-                        data.put("type", "video");
-                        data.put("status", "completed");
-                        data.put("score", 100);
-                        data.put("timestamp", System.currentTimeMillis());
-
-                        db.collection("child_progress")
-                                .add(data)
-                                .addOnSuccessListener(docRef -> {
-                                    Log.d(TAG, "🎬 New progress record created for " + moduleId);
-                                    saveProgress();
-                                });
+        progressService.logVideoPlay(childId, moduleId,
+                new com.example.brightbuds_app.interfaces.DataCallbacks.GenericCallback() {
+                    @Override
+                    public void onSuccess(String message) {
+                        Log.d(TAG, "🎬 Play recorded for " + moduleId);
+                        saveProgress();
                     }
-                })
-                .addOnFailureListener(e -> Log.e(TAG, "⚠️ Failed to log video play", e));
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        Log.e(TAG, "⚠️ Failed to log video play", e);
+                    }
+                });
     }
 
     /** Save module completion progress (kept same) */
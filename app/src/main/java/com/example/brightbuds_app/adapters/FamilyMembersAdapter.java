@@ -10,8 +10,10 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.example.brightbuds_app.R;
 import com.example.brightbuds_app.models.FamilyMember;
+import com.example.brightbuds_app.utils.EncryptedImageGlideModule;
 
 import java.io.File;
 import java.util.List;
@@ -61,9 +63,11 @@ public class FamilyMembersAdapter extends RecyclerView.Adapter<FamilyMembersAdap
         if (member.getLocalPath() != null && !member.getLocalPath().isEmpty()) {
             File localFile = new File(member.getLocalPath());
             if (localFile.exists()) {
-                // ✅ Load image directly from device storage (COPPA-safe)
+                // ✅ Load image directly from device storage (COPPA-safe), decrypting as it streams.
+                // Disk cache off so Glide never writes a decoded plaintext copy.
                 Glide.with(holder.itemView.getContext())
-                        .load(localFile)
+                        .load(new EncryptedImageGlideModule.EncryptedFile(localFile))
+                        .diskCacheStrategy(DiskCacheStrategy.NONE)
                         .placeholder(getDefaultImageResource(member.getRelationship()))
                         .error(getDefaultImageResource(member.getRelationship()))
                         .into(holder.imagePhoto);
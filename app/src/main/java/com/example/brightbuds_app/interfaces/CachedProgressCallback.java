@@ -0,0 +1,29 @@
+package com.example.brightbuds_app.interfaces;
+
+import com.example.brightbuds_app.models.Progress;
+import java.util.List;
+
+/**
+ * Callback interface for local-first progress reads: cached rows arrive
+ * first, then whatever the background Firestore refresh changed.
+ */
+public interface CachedProgressCallback {
+    /**
+     * Called with the rows already in the local cache, without waiting on the network.
+     * @param cachedList Cached Progress rows (may be empty on first launch)
+     */
+    void onCached(List<Progress> cachedList);
+
+    /**
+     * Called once the Firestore refresh has been applied to the cache.
+     * Always called after {@link #onCached}.
+     * @param changedList Only the rows that were new or different; empty if nothing changed
+     */
+    void onRevalidated(List<Progress> changedList);
+
+    /**
+     * Called when the refresh fails. Cached rows, if any, were already delivered.
+     * @param e Exception thrown during the operation
+     */
+    void onFailure(Exception e);
+}
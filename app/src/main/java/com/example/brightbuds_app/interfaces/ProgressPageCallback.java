@@ -0,0 +1,21 @@
+package com.example.brightbuds_app.interfaces;
+
+import com.example.brightbuds_app.models.ProgressPage;
+
+/**
+ * Callback interface for returning one page of progress history
+ * from the local cache or Firestore.
+ */
+public interface ProgressPageCallback {
+    /**
+     * Called when the page has been read.
+     * @param page Rows for this page plus the key for the next one
+     */
+    void onSuccess(ProgressPage page);
+
+    /**
+     * Called when reading the page fails.
+     * @param e Exception thrown during the operation
+     */
+    void onFailure(Exception e);
+}
@@ -0,0 +1,44 @@
+package com.example.brightbuds_app.models;
+
+/**
+ * One additive counter (plays, timeSpent) on a child_progress document,
+ * as contributed by this device.
+ *
+ * localTotal only ever grows; acked is the part of it the server has
+ * already received. The difference is what the next sync sends as an
+ * increment.
+ */
+public class CounterDelta {
+
+    private final String progressId;
+    private final String parentId;
+    private final String childId;
+    private final String moduleId;
+    private final String field;
+    private final long localTotal;
+    private final long acked;
+
+    public CounterDelta(String progressId, String parentId, String childId, String moduleId,
+                        String field, long localTotal, long acked) {
+        this.progressId = progressId;
+        this.parentId = parentId;
+        this.childId = childId;
+        this.moduleId = moduleId;
+        this.field = field;
+        this.localTotal = localTotal;
+        this.acked = acked;
+    }
+
+    public String getProgressId() { return progressId; }
+    public String getParentId() { return parentId; }
+    public String getChildId() { return childId; }
+    public String getModuleId() { return moduleId; }
+    public String getField() { return field; }
+    public long getLocalTotal() { return localTotal; }
+    public long getAcked() { return acked; }
+
+    /** Amount not yet applied on the server */
+    public long getPending() {
+        return Math.max(0L, localTotal - acked);
+    }
+}
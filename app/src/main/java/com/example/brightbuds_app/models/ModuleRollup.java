@@ -0,0 +1,44 @@
+package com.example.brightbuds_app.models;
+
+/**
+ * ModuleRollup — Pre-aggregated progress for one (child, module) pair.
+ * Read from the local child_module_rollup table, which SQLite triggers
+ * keep in step with child_progress.
+ */
+public class ModuleRollup {
+    private String childId;
+    private String moduleId;
+    private String parentId;
+    private int bestScore;
+    private int totalPlays;
+    private long totalTimeSpent;
+    private boolean completed;
+    private long lastTimestamp;
+
+    public ModuleRollup() {}
+
+    // Getters and Setters
+    public String getChildId() { return childId; }
+    public void setChildId(String childId) { this.childId = childId; }
+
+    public String getModuleId() { return moduleId; }
+    public void setModuleId(String moduleId) { this.moduleId = moduleId; }
+
+    public String getParentId() { return parentId; }
+    public void setParentId(String parentId) { this.parentId = parentId; }
+
+    public int getBestScore() { return bestScore; }
+    public void setBestScore(int bestScore) { this.bestScore = bestScore; }
+
+    public int getTotalPlays() { return totalPlays; }
+    public void setTotalPlays(int totalPlays) { this.totalPlays = totalPlays; }
+
+    public long getTotalTimeSpent() { return totalTimeSpent; }
+    public void setTotalTimeSpent(long totalTimeSpent) { this.totalTimeSpent = totalTimeSpent; }
+
+    public boolean isCompleted() { return completed; }
+    public void setCompleted(boolean completed) { this.completed = completed; }
+
+    public long getLastTimestamp() { return lastTimestamp; }
+    public void setLastTimestamp(long lastTimestamp) { this.lastTimestamp = lastTimestamp; }
+}
@@ -27,6 +27,14 @@ public class Progress {
 
     public Progress() {}
 
+    /**
+     * The one document id every write for a (child, module) pair uses, online
+     * or offline, so replays upsert the same record instead of adding another.
+     */
+    public static String canonicalId(String childId, String moduleId) {
+        return childId + "_" + moduleId;
+    }
+
     @PropertyName("progressId")
     public String getProgressId() { return progressId; }
     @PropertyName("progressId")
@@ -0,0 +1,51 @@
+package com.example.brightbuds_app.models;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ProgressPage — One page of a child's progress history, newest first.
+ *
+ * Pages are keyed on (timestamp, progressId) rather than an offset, so
+ * fetching page N costs the same as fetching page 1 and rows inserted
+ * while the user scrolls never shift or duplicate what is already shown.
+ * Pass {@link #getNextKey()} back in to fetch the following page.
+ */
+public class ProgressPage {
+
+    /** Position after which the next page starts; null means "from the newest row" */
+    public static final class Key {
+        private final long timestamp;
+        private final String progressId;
+
+        public Key(long timestamp, String progressId) {
+            this.timestamp = timestamp;
+            this.progressId = progressId;
+        }
+
+        public static Key of(Progress last) {
+            return new Key(last.getTimestamp(), last.getProgressId());
+        }
+
+        public long getTimestamp() { return timestamp; }
+        public String getProgressId() { return progressId; }
+    }
+
+    private final List<Progress> items;
+    private final Key nextKey;
+
+    public ProgressPage(List<Progress> items, int pageSize) {
+        this.items = Collections.unmodifiableList(items);
+        // A full page may have more behind it; a short page is the end
+        this.nextKey = items.size() >= pageSize && !items.isEmpty()
+                ? Key.of(items.get(items.size() - 1))
+                : null;
+    }
+
+    public List<Progress> getItems() { return items; }
+
+    /** Key to request the following page with, or null when this was the last page */
+    public Key getNextKey() { return nextKey; }
+
+    public boolean hasMore() { return nextKey != null; }
+}
@@ -1,5 +1,7 @@
 package com.example.brightbuds_app.models;
 
+import com.google.firebase.firestore.Exclude;
+
 /**
  * SyncItem — Represents a queued record waiting to sync with Firestore.
  * Used for generic sync operations (insert/update/delete).
@@ -9,6 +11,7 @@ public class SyncItem {
     private String tableName;
     private String recordId;
     private String operation;
+    private int revision;
 
     public SyncItem() {}
 
@@ -31,4 +34,10 @@ public class SyncItem {
 
     public String getOperation() { return operation; }
     public void setOperation(String operation) { this.operation = operation; }
+
+    /** Local coalescing counter; not part of the remote document */
+    @Exclude
+    public int getRevision() { return revision; }
+    @Exclude
+    public void setRevision(int revision) { this.revision = revision; }
 }
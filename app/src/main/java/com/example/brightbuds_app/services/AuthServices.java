@@ -5,6 +5,7 @@ import android.util.Log;
 
 import com.example.brightbuds_app.interfaces.DataCallbacks;
 import com.example.brightbuds_app.models.User;
+import com.example.brightbuds_app.utils.DecryptionCache;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.FirebaseFirestore;
@@ -156,9 +157,10 @@ public class AuthServices {
                 .addOnFailureListener(callback::onFailure);
     }
 
-    // Logout
+    // Logout — also drops any decrypted plaintext held in memory
     public void logout() {
         auth.signOut();
+        DecryptionCache.clear();
     }
 
 
@@ -6,6 +6,7 @@ import androidx.annotation.NonNull;
 import com.example.brightbuds_app.interfaces.DataCallbacks;
 import com.example.brightbuds_app.models.ChildProfile;
 import com.example.brightbuds_app.models.Progress;
+import com.example.brightbuds_app.utils.BatchDecryptor;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
@@ -13,8 +14,10 @@ import com.google.firebase.firestore.QueryDocumentSnapshot;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Handles CRUD operations for Child Profiles (Firestore + Encryption fallback)
@@ -105,6 +108,9 @@ public class ChildProfileService {
                         return;
                     }
 
+                    // Encrypted fields per child, in order: name, gender, displayName
+                    List<String> encryptedFields = new ArrayList<>();
+
                     for (QueryDocumentSnapshot doc : snapshot) {
                         try {
                             ChildProfile child = new ChildProfile();
@@ -113,10 +119,10 @@ public class ChildProfileService {
                             child.setLearningLevel(doc.getString("learningLevel"));
                             child.setAge(doc.getLong("age") != null ? doc.getLong("age").intValue() : 0);
                             child.setActive(doc.getBoolean("active") != null ? doc.getBoolean("active") : true);
-                            child.setDecryptedName(doc.getString("name"));
-                            child.setDecryptedGender(doc.getString("gender"));
-                            child.setDecryptedDisplayName(doc.getString("displayName"));
 
+                            encryptedFields.add(doc.getString("name"));
+                            encryptedFields.add(doc.getString("gender"));
+                            encryptedFields.add(doc.getString("displayName"));
                             children.add(child);
                         } catch (Exception e) {
                             Log.e(TAG, "❌ Error parsing child document: " + doc.getId(), e);
@@ -125,11 +131,28 @@ public class ChildProfileService {
 
                     if (children.isEmpty()) {
                         callback.onSuccess(children);
-                    } else {
-                        Log.d(TAG, "📊 Loaded " + children.size() + " children; computing module progress...");
-                        computeProgressForChildren(children, callback);
+                        return;
                     }
 
+                    BatchDecryptor.decryptAllAsync(encryptedFields, new DataCallbacks.GenericListCallback<String>() {
+                        @Override
+                        public void onSuccess(List<String> plain) {
+                            for (int i = 0; i < children.size(); i++) {
+                                ChildProfile child = children.get(i);
+                                child.setName(plain.get(i * 3));
+                                child.setGender(plain.get(i * 3 + 1));
+                                child.setDisplayName(plain.get(i * 3 + 2));
+                            }
+                            Log.d(TAG, "📊 Loaded " + children.size() + " children; computing module progress...");
+                            computeProgressForChildren(parentId, children, callback);
+                        }
+
+                        @Override
+                        public void onFailure(Exception e) {
+                            callback.onFailure(e);
+                        }
+                    });
+
                 })
                 .addOnFailureListener(e -> {
                     Log.e(TAG, "❌ Firestore query failed for parentId=" + parentId, e);
@@ -137,22 +160,32 @@ public class ChildProfileService {
                 });
     }
 
-    /** Compute progress from child_progress collection */
-    private void computeProgressForChildren(List<ChildProfile> children, DataCallbacks.ChildrenListCallback callback) {
+    /** Compute progress from this parent's child_progress documents in a single pass */
+    private void computeProgressForChildren(String parentId,
+                                            List<ChildProfile> children,
+                                            DataCallbacks.ChildrenListCallback callback) {
         db.collection("child_progress")
+                .whereEqualTo("parentId", parentId)
                 .get()
                 .addOnSuccessListener(progressSnap -> {
-                    for (ChildProfile child : children) {
-                        int completed = 0;
-
-                        for (var doc : progressSnap.getDocuments()) {
-                            Progress progress = doc.toObject(Progress.class);
-                            if (progress != null && progress.getChildId() != null &&
-                                    progress.getChildId().equals(child.getChildId()) &&
-                                    progress.isModuleCompleted()) {
-                                completed++;
-                            }
+                    // childId -> distinct completed modules, same grain as child_module_rollup
+                    Map<String, Set<String>> completedByChild = new HashMap<>();
+                    for (var doc : progressSnap.getDocuments()) {
+                        Progress progress = doc.toObject(Progress.class);
+                        if (progress == null || progress.getChildId() == null ||
+                                !progress.isModuleCompleted()) continue;
+
+                        Set<String> modules = completedByChild.get(progress.getChildId());
+                        if (modules == null) {
+                            modules = new HashSet<>();
+                            completedByChild.put(progress.getChildId(), modules);
                         }
+                        modules.add(progress.getModuleId() != null ? progress.getModuleId() : doc.getId());
+                    }
+
+                    for (ChildProfile child : children) {
+                        Set<String> modules = completedByChild.get(child.getChildId());
+                        int completed = modules != null ? modules.size() : 0;
 
                         // Calculate % and stars from completed modules (max = 7)
                         child.setCompletedModules(completed);
@@ -0,0 +1,148 @@
+package com.example.brightbuds_app.services;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.brightbuds_app.models.CounterDelta;
+import com.example.brightbuds_app.utils.ConfigManager;
+import com.example.brightbuds_app.utils.Constants;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CounterSync — Pushes this device's counter contributions to Firestore.
+ *
+ * plays and timeSpent are G-Counters: every device only ever adds to its
+ * own slot, and a document's value is the sum over devices. Each pending
+ * document is updated in one transaction that:
+ *  - reads counters.&lt;field&gt;.&lt;deviceId&gt;, the part of this device's
+ *    total the server has already applied
+ *  - adds FieldValue.increment(localTotal - applied) to the top-level
+ *    field, so readers keep seeing one number
+ *  - raises the slot to localTotal
+ *
+ * The slot moves with the increment, so it doubles as the server-side ack:
+ * if the process dies after the commit but before the local ack, the
+ * re-send finds the slot already at localTotal and adds nothing.
+ * Transactions need a connection; offline, counters simply stay pending.
+ *
+ * Flushes are serialized process-wide so two of them never read the same
+ * slot concurrently.
+ */
+public class CounterSync {
+
+    private static final String TAG = "CounterSync";
+    private static final String FIELD_COUNTERS = "counters";
+
+    private static final Object LOCK = new Object();
+    private static Task<Integer> tail = Tasks.forResult(0);
+
+    private final ProgressDao localDb;
+    private final FirebaseFirestore firestore;
+    private final ConfigManager config;
+
+    public CounterSync(Context context) {
+        this.localDb = ProgressDao.getInstance(context);
+        this.firestore = FirebaseFirestore.getInstance();
+        this.config = ConfigManager.getInstance(context);
+    }
+
+    /** Sends every pending contribution; the task's result is the number of documents updated */
+    public Task<Integer> flush() {
+        synchronized (LOCK) {
+            tail = tail.continueWithTask(previous -> localDb.getPendingCounters()
+                    .onSuccessTask(this::push));
+            return tail;
+        }
+    }
+
+    private Task<Integer> push(List<CounterDelta> pending) {
+        if (pending.isEmpty()) return Tasks.forResult(0);
+
+        Map<String, List<CounterDelta>> byDoc = new LinkedHashMap<>();
+        for (CounterDelta d : pending) {
+            List<CounterDelta> list = byDoc.get(d.getProgressId());
+            if (list == null) byDoc.put(d.getProgressId(), list = new ArrayList<>());
+            list.add(d);
+        }
+
+        String deviceId = config.getDeviceId();
+        return new SyncPipeline<List<CounterDelta>>(Constants.SYNC_MAX_IN_FLIGHT)
+                .run(new ArrayList<>(byDoc.values()), doc -> pushDoc(doc, deviceId)
+                        .onSuccessTask(unused -> localDb.ackCounters(doc)))
+                .continueWith(task -> {
+                    SyncPipeline.Outcome<List<CounterDelta>> outcome = task.getResult();
+                    if (outcome.succeeded.size() < outcome.total()) {
+                        Log.w(TAG, "⚠️ Counter flush incomplete; remaining deltas stay pending",
+                                outcome.lastError);
+                        throw outcome.lastError;
+                    }
+                    Log.d(TAG, "✅ Flushed counters for " + byDoc.size() + " progress docs");
+                    return byDoc.size();
+                });
+    }
+
+    private Task<Void> pushDoc(List<CounterDelta> doc, String deviceId) {
+        CounterDelta first = doc.get(0);
+        DocumentReference ref = firestore.collection("child_progress").document(first.getProgressId());
+
+        return firestore.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(ref);
+            Object stored = snapshot.get(FIELD_COUNTERS);
+            Map<?, ?> counters = stored instanceof Map ? (Map<?, ?>) stored : null;
+            Map<String, Long> increments = unappliedIncrements(doc, counters, deviceId);
+
+            Map<String, Object> data = new HashMap<>();
+            Map<String, Object> slots = new HashMap<>();
+            data.put("parentId", first.getParentId());
+            data.put("childId", first.getChildId());
+            data.put("moduleId", first.getModuleId());
+            data.put("lastUpdated", System.currentTimeMillis());
+            for (CounterDelta d : doc) {
+                Long increment = increments.get(d.getField());
+                if (increment != null) data.put(d.getField(), FieldValue.increment(increment));
+                Map<String, Object> slot = new HashMap<>();
+                slot.put(deviceId, Math.max(d.getLocalTotal(), applied(counters, d.getField(), deviceId)));
+                slots.put(d.getField(), slot);
+            }
+            data.put(FIELD_COUNTERS, slots);
+
+            transaction.set(ref, data, SetOptions.merge());
+            return null;
+        });
+    }
+
+    /**
+     * Amount each field still needs so the document holds this device's
+     * localTotal, given the slots read from the server. Fields already
+     * applied (a commit whose ack was lost) are left out.
+     */
+    static Map<String, Long> unappliedIncrements(List<CounterDelta> doc,
+                                                 Map<?, ?> serverCounters,
+                                                 String deviceId) {
+        Map<String, Long> increments = new HashMap<>();
+        for (CounterDelta d : doc) {
+            long missing = d.getLocalTotal() - applied(serverCounters, d.getField(), deviceId);
+            if (missing > 0) increments.put(d.getField(), missing);
+        }
+        return increments;
+    }
+
+    /** This device's slot for a field, or 0 if the server has none */
+    static long applied(Map<?, ?> serverCounters, String field, String deviceId) {
+        Object slots = serverCounters == null ? null : serverCounters.get(field);
+        Object value = slots instanceof Map ? ((Map<?, ?>) slots).get(deviceId) : null;
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.brightbuds_app.services;
+
+import android.database.Cursor;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * CursorIterator — Lazily maps cursor rows to model objects.
+ *
+ * Rows are read one at a time as the caller advances, so only the current
+ * row is ever materialized. Subclasses resolve their column indices once in
+ * the constructor. Always close it (try-with-resources); it also closes
+ * itself when the last row has been read.
+ */
+public abstract class CursorIterator<T> implements Iterator<T>, Iterable<T>, Closeable {
+
+    /** Callback for {@link DatabaseHelper} visitor-style scans */
+    public interface RowVisitor<T> {
+        /** Return false to stop the scan early */
+        boolean visit(T row);
+    }
+
+    protected final Cursor cursor;
+    private boolean advanced = false;
+    private boolean hasRow = false;
+
+    protected CursorIterator(Cursor cursor) {
+        this.cursor = cursor;
+    }
+
+    /** Reads the row the cursor is currently positioned on */
+    protected abstract T read(Cursor cursor);
+
+    @Override
+    public boolean hasNext() {
+        if (!advanced) {
+            hasRow = !cursor.isClosed() && cursor.moveToNext();
+            advanced = true;
+            if (!hasRow) close();
+        }
+        return hasRow;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        advanced = false;
+        return read(cursor);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+
+    /** Drains the remaining rows into the visitor, closing the cursor afterwards */
+    public int visitRemaining(RowVisitor<T> visitor) {
+        int visited = 0;
+        try {
+            while (hasNext()) {
+                visited++;
+                if (!visitor.visit(next())) break;
+            }
+        } finally {
+            close();
+        }
+        return visited;
+    }
+
+    @Override
+    public void close() {
+        if (!cursor.isClosed()) cursor.close();
+    }
+}
@@ -6,144 +6,333 @@ import android.util.Log;
 import com.example.brightbuds_app.interfaces.DataCallbacks;
 import com.example.brightbuds_app.models.Progress;
 import com.example.brightbuds_app.models.SyncItem;
+import com.example.brightbuds_app.utils.Constants;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.FirebaseFirestore;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * DataSyncManager
  * Syncs local SQLite to Firestore for:
  *  - child_progress (offline progress)
  *  - optional queued operations (SyncQueue)
+ *  - journaled game events (GameEventJournal)
+ *  - per-device plays/timeSpent counters (CounterSync)
  */
 public class DataSyncManager {
 
     private static final String TAG = "DataSyncManager";
 
-    private final DatabaseHelper localDb;
+    private final ProgressDao localDb;
     private final FirebaseFirestore firestore;
+    private final GameEventJournal gameJournal;
+    private final ProgressService progressService;
+    private final CounterSync counterSync;
+    private int maxInFlight = Constants.SYNC_MAX_IN_FLIGHT;
 
     public DataSyncManager(Context context) {
-        this.localDb = new DatabaseHelper(context);
+        this.localDb = ProgressDao.getInstance(context);
         this.firestore = FirebaseFirestore.getInstance();
+        this.gameJournal = GameEventJournal.getInstance(context);
+        this.progressService = new ProgressService(context);
+        this.counterSync = new CounterSync(context);
     }
 
-    // Sync unsynced child_progress rows
-    public void syncAllPendingChanges(DataCallbacks.GenericCallback callback) {
-        List<Progress> unsynced = localDb.getUnsyncedProgressDetails();
+    /** Number of remote writes (batches or queue items) kept outstanding at once */
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
 
-        if (unsynced.isEmpty()) {
-            String msg = "✅ All progress records are already synced";
-            Log.i(TAG, msg);
-            callback.onSuccess(msg);
+    /**
+     * Replays journaled game events. Events from one session are merged
+     * (newest score, plays/time deltas summed) and written through
+     * recordGameSession, which records the deltas as local counters before
+     * touching the network. Each session's counters are written together
+     * with a replay watermark (its newest event timestamp), so if the
+     * process dies before the journal commit, the next replay skips what
+     * was already applied. Once those counter writes are on disk the events
+     * are dropped from the journal; the Firestore writes then finish on
+     * their own, offline or not.
+     */
+    public void replayGameJournal(DataCallbacks.GenericCallback callback) {
+        if (FirebaseAuth.getInstance().getCurrentUser() == null) {
+            callback.onFailure(new IllegalStateException("User not authenticated"));
             return;
         }
 
-        Log.i(TAG, "🔄 Syncing " + unsynced.size() + " offline progress records...");
-        syncNextProgress(unsynced, 0, callback);
+        GameEventJournal.Batch batch = gameJournal.drain();
+        if (batch.isEmpty()) {
+            callback.onSuccess("✅ No journaled game events");
+            return;
+        }
+
+        Map<String, String> scopes = new LinkedHashMap<>();
+        for (String session : batch.sessionKeys()) {
+            scopes.put(session, GameEventJournal.replayScope(session));
+        }
+        localDb.getWatermarks(scopes.values()).addOnCompleteListener(marks -> {
+            if (!marks.isSuccessful()) {
+                gameJournal.release(batch);
+                callback.onFailure(marks.getException());
+                return;
+            }
+            Map<String, Long> appliedUpTo = new HashMap<>();
+            for (Map.Entry<String, String> scope : scopes.entrySet()) {
+                appliedUpTo.put(scope.getKey(), marks.getResult().get(scope.getValue()));
+            }
+            replaySessions(batch, batch.coalescePerSession(appliedUpTo), callback);
+        });
     }
 
-    private void syncNextProgress(List<Progress> list,
-                                  int index,
-                                  DataCallbacks.GenericCallback callback) {
+    private void replaySessions(GameEventJournal.Batch batch,
+                                Collection<GameEventJournal.Event> sessions,
+                                DataCallbacks.GenericCallback callback) {
+        Log.i(TAG, "🎮 Replaying " + batch.size() + " journaled events as "
+                + sessions.size() + " session writes");
 
-        if (index >= list.size()) {
-            String msg = "✅ Sync complete for all progress records";
-            Log.i(TAG, msg);
-            callback.onSuccess(msg);
-            return;
-        }
+        DataCallbacks.GenericCallback onEach = new DataCallbacks.GenericCallback() {
+            @Override
+            public void onSuccess(String result) { }
 
-        Progress p = list.get(index);
-        String progressId = p.getProgressId();
-        if (progressId == null || progressId.isEmpty()) {
-            Log.w(TAG, "Skipping progress with no ID");
-            syncNextProgress(list, index + 1, callback);
-            return;
+            @Override
+            public void onFailure(Exception e) {
+                Log.w(TAG, "⚠️ Journaled session cached locally: " + e.getMessage());
+            }
+        };
+        for (GameEventJournal.Event e : sessions) {
+            progressService.recordGameSession(e.childId, e.moduleId, e.score, e.timeSpentDeltaMs,
+                    e.stars, e.correct, e.incorrect, e.playsDelta, e.timestamp, onEach);
         }
 
-        Log.d(TAG, "⬆️ Syncing progress " + progressId +
-                " child=" + p.getChildId() + " module=" + p.getModuleId());
+        // Writer thread is FIFO: this settles after every counter write queued above
+        localDb.write(() -> null).addOnCompleteListener(task -> {
+            if (!task.isSuccessful()) {
+                gameJournal.release(batch);
+                callback.onFailure(task.getException());
+                return;
+            }
+            gameJournal.commit(batch);
+            callback.onSuccess("✅ Replayed " + sessions.size() + " game sessions");
+        });
+    }
+
+    // Sync unsynced child_progress rows, after flushing any journaled game events, then counters
+    public void syncAllPendingChanges(DataCallbacks.GenericCallback callback) {
+        DataCallbacks.GenericCallback thenCounters = new DataCallbacks.GenericCallback() {
+            @Override
+            public void onSuccess(String progressResult) {
+                counterSync.flush()
+                        .addOnSuccessListener(docs -> callback.onSuccess(progressResult))
+                        .addOnFailureListener(callback::onFailure);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                callback.onFailure(e);
+            }
+        };
+
+        replayGameJournal(new DataCallbacks.GenericCallback() {
+            @Override
+            public void onSuccess(String result) {
+                syncUnsyncedProgress(thenCounters);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                // Journal stays intact for the next attempt
+                syncUnsyncedProgress(thenCounters);
+            }
+        });
+    }
 
-        firestore.collection("child_progress")
-                .document(progressId)
-                .set(p)
-                .addOnSuccessListener(unused -> {
-                    localDb.markProgressAsSynced(progressId);
-                    Log.d(TAG, "✅ Synced " + progressId);
-                    syncNextProgress(list, index + 1, callback);
+    private void syncUnsyncedProgress(DataCallbacks.GenericCallback callback) {
+        localDb.countUnsynced()
+                .addOnSuccessListener(pending -> {
+                    if (pending == 0) {
+                        String msg = "✅ All progress records are already synced";
+                        Log.i(TAG, msg);
+                        callback.onSuccess(msg);
+                        return;
+                    }
+
+                    localDb.getUnsyncedProgressDetails()
+                            .addOnSuccessListener(unsynced -> {
+                                Log.i(TAG, "🔄 Syncing " + unsynced.size() + " offline progress records...");
+                                syncProgressBatches(unsynced, callback);
+                            })
+                            .addOnFailureListener(callback::onFailure);
                 })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "❌ Failed to sync " + progressId, e);
-                    // Stop here; keep remaining as unsynced (retry later)
-                    callback.onFailure(e);
-                });
+                .addOnFailureListener(callback::onFailure);
     }
 
-    // sync generic queued operations
-    public void syncQueuedOperations(DataCallbacks.GenericCallback callback) {
-        List<SyncItem> queue = localDb.getSyncQueue();
-        if (queue.isEmpty()) {
-            callback.onSuccess("✅ No queued operations");
-            return;
+    /**
+     * Uploads rows as transactions of up to FIRESTORE_BATCH_LIMIT documents,
+     * with up to maxInFlight outstanding. Each committed batch is marked
+     * synced in one local transaction. A batch the server rejects is split
+     * into single-row writes so only the bad rows are charged an attempt.
+     */
+    private void syncProgressBatches(List<Progress> list, DataCallbacks.GenericCallback callback) {
+        List<List<Progress>> batches = new ArrayList<>();
+        List<Progress> current = new ArrayList<>();
+        for (Progress p : list) {
+            if (p.getProgressId() == null || p.getProgressId().isEmpty()) {
+                Log.w(TAG, "Skipping progress with no ID");
+                continue;
+            }
+            current.add(p);
+            if (current.size() == Constants.FIRESTORE_BATCH_LIMIT) {
+                batches.add(current);
+                current = new ArrayList<>();
+            }
         }
+        if (!current.isEmpty()) batches.add(current);
+
+        new SyncPipeline<List<Progress>>(maxInFlight)
+                .run(batches, this::commitProgressBatch)
+                .addOnSuccessListener(batchOutcome -> {
+                    List<Progress> split = new ArrayList<>();
+                    for (List<Progress> rejected : batchOutcome.rejected) split.addAll(rejected);
+
+                    new SyncPipeline<Progress>(maxInFlight)
+                            .run(split, p -> commitProgressBatch(Collections.singletonList(p)))
+                            .addOnSuccessListener(rowOutcome -> {
+                                int synced = 0;
+                                for (List<Progress> b : batchOutcome.succeeded) synced += b.size();
+                                synced += rowOutcome.succeeded.size();
+                                int deferred = rowOutcome.deferred.size();
+                                for (List<Progress> b : batchOutcome.deferred) deferred += b.size();
 
-        Log.i(TAG, "🔄 Syncing " + queue.size() + " queued operations...");
-        syncNextQueueItem(queue, 0, callback);
+                                Exception error = batchOutcome.lastError != null
+                                        ? batchOutcome.lastError : rowOutcome.lastError;
+                                finishProgressDrain(synced, rowOutcome.rejected, deferred, error, callback);
+                            });
+                });
     }
 
-    private void syncNextQueueItem(List<SyncItem> items,
-                                   int index,
-                                   DataCallbacks.GenericCallback callback) {
+    /** One transaction per batch, so a lower cached score never replaces the server's best */
+    private Task<?> commitProgressBatch(List<Progress> rows) {
+        Map<String, Map<String, Object>> byDoc = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        for (Progress p : rows) {
+            // plays/timeSpent are counters owned by CounterSync; never overwrite them here
+            Map<String, Object> data = new HashMap<>();
+            data.put("parentId", p.getParentId());
+            data.put("childId", p.getChildId());
+            data.put("moduleId", p.getModuleId());
+            data.put("status", p.getStatus());
+            data.put("score", p.getScore());
+            data.put("timestamp", p.getTimestamp());
+            data.put("lastUpdated", now); // lets other devices pick the row up in their delta pull
 
-        if (index >= items.size()) {
-            callback.onSuccess("✅ All queued operations synced");
-            return;
+            // Legacy rows of one (child, module) land on the same canonical document
+            String docId = uploadId(p);
+            Map<String, Object> earlier = byDoc.get(docId);
+            byDoc.put(docId, earlier == null ? data : ProgressDocWrites.keepBest(earlier, data));
         }
+        return ProgressDocWrites.setKeepingBest(firestore, byDoc)
+                .onSuccessTask(unused -> localDb.markProgressBatchSynced(rows));
+    }
 
-        SyncItem item = items.get(index);
+    /**
+     * Rows cached before ids were canonical ("offline_&lt;millis&gt;", auto-ids)
+     * still upload onto the canonical document, so a replay is an upsert.
+     */
+    private static String uploadId(Progress p) {
+        if (p.getChildId() == null || p.getModuleId() == null) return p.getProgressId();
+        return Progress.canonicalId(p.getChildId(), p.getModuleId());
+    }
+
+    private void finishProgressDrain(int synced, List<Progress> rejected, int deferred,
+                                     Exception error, DataCallbacks.GenericCallback callback) {
+        localDb.recordProgressSyncFailures(rejected, Constants.MAX_SYNC_RETRIES)
+                .addOnCompleteListener(task -> {
+                    int quarantined = task.isSuccessful() ? task.getResult() : 0;
+                    String msg = "Progress sync: " + synced + " synced, " + rejected.size() +
+                            " rejected (" + quarantined + " quarantined), " + deferred + " deferred";
+
+                    if (deferred > 0) {
+                        // Transient failures: leave rows unsynced and let the caller retry later
+                        Log.w(TAG, "⚠️ " + msg, error);
+                        callback.onFailure(error);
+                    } else {
+                        Log.i(TAG, "✅ " + msg);
+                        callback.onSuccess("✅ " + msg);
+                    }
+                });
+    }
+
+    // sync generic queued operations
+    public void syncQueuedOperations(DataCallbacks.GenericCallback callback) {
+        localDb.countPendingSyncQueue()
+                .addOnSuccessListener(pending -> {
+                    if (pending == 0) {
+                        callback.onSuccess("✅ No queued operations");
+                        return;
+                    }
+
+                    localDb.getSyncQueue()
+                            .addOnSuccessListener(queue -> {
+                                Log.i(TAG, "🔄 Syncing " + queue.size() + " queued operations...");
+                                new SyncPipeline<SyncItem>(maxInFlight)
+                                        .run(queue, this::replayQueueItem)
+                                        .addOnSuccessListener(outcome -> finishQueueDrain(outcome, callback));
+                            })
+                            .addOnFailureListener(callback::onFailure);
+                })
+                .addOnFailureListener(callback::onFailure);
+    }
+
+    private Task<?> replayQueueItem(SyncItem item) {
         String collection = resolveCollectionName(item.getTableName());
+        DocumentReference doc = firestore.collection(collection).document(item.getRecordId());
 
         Log.d(TAG, "Processing queued item " + item.getOperation() +
                 " on " + collection + "/" + item.getRecordId());
 
+        Task<Void> write;
         switch (item.getOperation().toLowerCase()) {
             case "insert":
-                firestore.collection(collection)
-                        .document(item.getRecordId())
-                        .set(item)
-                        .addOnSuccessListener(unused -> {
-                            localDb.markAsSynced(item.getTableName(), item.getRecordId());
-                            syncNextQueueItem(items, index + 1, callback);
-                        })
-                        .addOnFailureListener(callback::onFailure);
+                write = doc.set(item);
                 break;
-
             case "update":
-                firestore.collection(collection)
-                        .document(item.getRecordId())
-                        .update("lastSynced", System.currentTimeMillis())
-                        .addOnSuccessListener(unused -> {
-                            localDb.markAsSynced(item.getTableName(), item.getRecordId());
-                            syncNextQueueItem(items, index + 1, callback);
-                        })
-                        .addOnFailureListener(callback::onFailure);
+                write = doc.update("lastSynced", System.currentTimeMillis());
                 break;
-
             case "delete":
-                firestore.collection(collection)
-                        .document(item.getRecordId())
-                        .delete()
-                        .addOnSuccessListener(unused -> {
-                            localDb.markAsSynced(item.getTableName(), item.getRecordId());
-                            syncNextQueueItem(items, index + 1, callback);
-                        })
-                        .addOnFailureListener(callback::onFailure);
+                write = doc.delete();
                 break;
-
             default:
                 Log.w(TAG, "⚠️ Unknown operation: " + item.getOperation());
-                syncNextQueueItem(items, index + 1, callback);
+                return Tasks.forException(
+                        new IllegalArgumentException("Unknown operation: " + item.getOperation()));
+        }
+        return write.onSuccessTask(unused -> localDb.completeQueueItem(item));
+    }
+
+    private void finishQueueDrain(SyncPipeline.Outcome<SyncItem> outcome,
+                                  DataCallbacks.GenericCallback callback) {
+        for (SyncItem rejected : outcome.rejected) {
+            localDb.recordQueueSyncFailure(rejected, Constants.MAX_SYNC_RETRIES);
+        }
+
+        String msg = "Queue sync: " + outcome.succeeded.size() + " replayed, " +
+                outcome.rejected.size() + " rejected, " + outcome.deferred.size() + " deferred";
+        if (!outcome.deferred.isEmpty()) {
+            Log.w(TAG, "⚠️ " + msg, outcome.lastError);
+            callback.onFailure(outcome.lastError);
+        } else {
+            Log.i(TAG, "✅ " + msg);
+            callback.onSuccess("✅ " + msg);
         }
     }
 
@@ -160,11 +349,20 @@ public class DataSyncManager {
 
     // Status
     public void getSyncStatus(DataCallbacks.GenericCallback callback) {
-        int pending = localDb.getUnsyncedProgressDetails().size();
-        if (pending == 0) {
-            callback.onSuccess("✅ All local data synced");
-        } else {
-            callback.onSuccess("⚠️ " + pending + " unsynced progress records");
-        }
+        localDb.countUnsynced()
+                .addOnSuccessListener(pending -> {
+                    localDb.countQuarantinedProgress()
+                            .addOnSuccessListener(quarantined -> {
+                                String parked = quarantined == 0 ? ""
+                                        : " (" + quarantined + " quarantined after repeated rejections)";
+                                if (pending == 0) {
+                                    callback.onSuccess("✅ All local data synced" + parked);
+                                } else {
+                                    callback.onSuccess("⚠️ " + pending + " unsynced progress records" + parked);
+                                }
+                            })
+                            .addOnFailureListener(callback::onFailure);
+                })
+                .addOnFailureListener(callback::onFailure);
     }
 }
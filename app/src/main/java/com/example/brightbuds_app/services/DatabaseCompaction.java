@@ -0,0 +1,140 @@
+package com.example.brightbuds_app.services;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import static com.example.brightbuds_app.services.DatabaseHelper.*;
+
+/**
+ * DatabaseCompaction — Retention and space reclamation for brightbuds.db.
+ *
+ * Synced child_progress rows older than the cutoff are folded into the
+ * archived_* totals of their child_module_rollup row and then deleted, so
+ * dashboards see the same totals with far fewer raw rows. Synced SyncQueue
+ * entries past the cutoff are deleted outright. Rows still waiting to
+ * upload are never touched.
+ *
+ * Freed pages are returned to the file system with an incremental VACUUM.
+ * Databases created before auto_vacuum was enabled get one full VACUUM
+ * first, which switches them over. Run only on the DAO writer thread.
+ */
+final class DatabaseCompaction {
+
+    private static final String TAG = "DatabaseCompaction";
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private DatabaseCompaction() { }
+
+    /** What a compaction pass removed */
+    static final class Result {
+        final int progressRowsFolded;
+        final int queueRowsDeleted;
+        final long bytesReclaimed;
+
+        Result(int progressRowsFolded, int queueRowsDeleted, long bytesReclaimed) {
+            this.progressRowsFolded = progressRowsFolded;
+            this.queueRowsDeleted = queueRowsDeleted;
+            this.bytesReclaimed = bytesReclaimed;
+        }
+
+        @Override
+        public String toString() {
+            return progressRowsFolded + " progress rows folded, " +
+                    queueRowsDeleted + " queue rows deleted, " +
+                    bytesReclaimed + " bytes reclaimed";
+        }
+    }
+
+    static Result compact(SQLiteDatabase db, long cutoffMillis) {
+        long sizeBefore = databaseSize(db);
+        int folded;
+        int dequeued;
+
+        // ?1 is the cutoff; SQLite reuses a numbered parameter wherever it appears
+        String old = TABLE_CHILD_PROGRESS + "." + COLUMN_SYNC_STATUS + " = 1 AND " +
+                TABLE_CHILD_PROGRESS + "." + COLUMN_TIMESTAMP + " < ?1";
+
+        db.beginTransaction();
+        try {
+            // Folding moves exactly what the delete removes, so the rollup
+            // totals stay the same and the per-row triggers can sit this out.
+            DatabaseMigrations.dropRollupTriggers(db);
+
+            db.execSQL(foldSql(old), new Object[]{cutoffMillis});
+
+            folded = db.delete(TABLE_CHILD_PROGRESS,
+                    COLUMN_SYNC_STATUS + " = 1 AND " + COLUMN_TIMESTAMP + " < ?",
+                    new String[]{String.valueOf(cutoffMillis)});
+
+            DatabaseMigrations.createRollupTriggers(db);
+
+            // created_at is CURRENT_TIMESTAMP text (UTC)
+            dequeued = db.delete(TABLE_SYNC_QUEUE,
+                    COLUMN_SYNC_STATUS + " = 1 AND " + COLUMN_CREATED_AT + " < datetime(?, 'unixepoch')",
+                    new String[]{String.valueOf(cutoffMillis / 1000)});
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        reclaimSpace(db);
+
+        Result result = new Result(folded, dequeued, Math.max(0, sizeBefore - databaseSize(db)));
+        Log.i(TAG, "🧹 Compaction: " + result);
+        return result;
+    }
+
+    private static String foldSql(String old) {
+        String match = " FROM " + TABLE_CHILD_PROGRESS +
+                " WHERE " + TABLE_CHILD_PROGRESS + "." + COLUMN_CHILD_ID + " = " +
+                TABLE_MODULE_ROLLUP + "." + COLUMN_CHILD_ID +
+                " AND " + TABLE_CHILD_PROGRESS + "." + COLUMN_MODULE_ID + " = " +
+                TABLE_MODULE_ROLLUP + "." + COLUMN_MODULE_ID +
+                " AND " + old + ")";
+
+        return "UPDATE " + TABLE_MODULE_ROLLUP + " SET " +
+                COLUMN_ARCHIVED_ROWS + " = " + COLUMN_ARCHIVED_ROWS +
+                " + (SELECT COUNT(*)" + match + ", " +
+                COLUMN_ARCHIVED_BEST_SCORE + " = MAX(" + COLUMN_ARCHIVED_BEST_SCORE +
+                ", IFNULL((SELECT MAX(" + COLUMN_SCORE + ")" + match + ", 0)), " +
+                COLUMN_ARCHIVED_PLAYS + " = " + COLUMN_ARCHIVED_PLAYS +
+                " + IFNULL((SELECT SUM(" + COLUMN_PLAYS + ")" + match + ", 0), " +
+                COLUMN_ARCHIVED_TIME_SPENT + " = " + COLUMN_ARCHIVED_TIME_SPENT +
+                " + IFNULL((SELECT SUM(" + COLUMN_TIME_SPENT + ")" + match + ", 0), " +
+                COLUMN_ARCHIVED_COMPLETED + " = MAX(" + COLUMN_ARCHIVED_COMPLETED +
+                ", IFNULL((SELECT MAX(" + COLUMN_SCORE + " >= 70 OR LOWER(" + COLUMN_STATUS + ") = 'completed')" +
+                match + ", 0)), " +
+                COLUMN_ARCHIVED_LAST_TIMESTAMP + " = MAX(" + COLUMN_ARCHIVED_LAST_TIMESTAMP +
+                ", IFNULL((SELECT MAX(" + COLUMN_TIMESTAMP + ")" + match + ", 0))" +
+                " WHERE EXISTS (SELECT 1" + match;
+    }
+
+    private static void reclaimSpace(SQLiteDatabase db) {
+        long mode = DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null);
+        if (mode != AUTO_VACUUM_INCREMENTAL) {
+            // Takes effect only through a full VACUUM; needed once per database
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+            Log.i(TAG, "Switched brightbuds.db to incremental auto_vacuum");
+        } else {
+            drain(db, "PRAGMA incremental_vacuum");
+        }
+        // Fold the WAL back in so the main file actually shrinks on disk
+        drain(db, "PRAGMA wal_checkpoint(TRUNCATE)");
+    }
+
+    private static void drain(SQLiteDatabase db, String pragma) {
+        try (Cursor c = db.rawQuery(pragma, null)) {
+            c.getCount();
+        }
+    }
+
+    private static long databaseSize(SQLiteDatabase db) {
+        long pages = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null);
+        long pageSize = DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
+        return pages * pageSize;
+    }
+}
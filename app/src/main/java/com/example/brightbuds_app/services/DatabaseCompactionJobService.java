@@ -0,0 +1,67 @@
+package com.example.brightbuds_app.services;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.util.Log;
+
+import com.example.brightbuds_app.utils.Constants;
+
+/**
+ * DatabaseCompactionJobService
+ * Daily maintenance job that enforces MAX_OFFLINE_STORAGE_DAYS on
+ * brightbuds.db while the device is charging and idle, so a VACUUM never
+ * competes with a child using the app.
+ */
+public class DatabaseCompactionJobService extends JobService {
+
+    private static final String TAG = "DbCompactionJob";
+
+    /** Schedules the job once; later calls leave the existing schedule alone */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) return;
+
+        for (JobInfo pending : scheduler.getAllPendingJobs()) {
+            if (pending.getId() == Constants.JOB_ID_DB_COMPACTION) return;
+        }
+
+        JobInfo job = new JobInfo.Builder(Constants.JOB_ID_DB_COMPACTION,
+                new ComponentName(context, DatabaseCompactionJobService.class))
+                .setPeriodic(Constants.DB_COMPACTION_INTERVAL_MS)
+                .setRequiresCharging(true)
+                .setRequiresDeviceIdle(true)
+                .setPersisted(true)
+                .build();
+
+        int result = scheduler.schedule(job);
+        Log.i(TAG, result == JobScheduler.RESULT_SUCCESS
+                ? "✅ Database compaction scheduled"
+                : "❌ Failed to schedule database compaction");
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        ProgressDao.getInstance(this)
+                .compact(Constants.MAX_OFFLINE_STORAGE_DAYS)
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
+                        Log.i(TAG, "✅ " + task.getResult());
+                        jobFinished(params, false);
+                    } else {
+                        Log.e(TAG, "❌ Compaction failed", task.getException());
+                        jobFinished(params, true);
+                    }
+                });
+        return true; // finishing asynchronously
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The running transaction completes on the writer thread; try again next window
+        return true;
+    }
+}
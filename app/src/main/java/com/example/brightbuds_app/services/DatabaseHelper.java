@@ -3,31 +3,58 @@ package com.example.brightbuds_app.services;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Looper;
 import android.util.Log;
 
+import androidx.annotation.VisibleForTesting;
+
+import com.example.brightbuds_app.models.CounterDelta;
+import com.example.brightbuds_app.models.ModuleRollup;
 import com.example.brightbuds_app.models.Progress;
+import com.example.brightbuds_app.models.ProgressPage;
 import com.example.brightbuds_app.models.SyncItem;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * DatabaseHelper — Manages local data persistence for BrightBuds.
  * Offline-first cache for child_progress.
+ *
+ * One instance per process (see {@link #getInstance(Context)}) keeps a single
+ * long-lived connection pool open for brightbuds.db. Write-ahead logging is
+ * enabled, so the pool has one primary connection that serializes writers
+ * while reads run concurrently on secondary connections. Methods never
+ * close the database; it lives for the life of the process.
+ *
+ * Methods here block on disk I/O. App code should call them through
+ * {@link ProgressDao}; opening the database on the main thread is logged,
+ * or rejected when the strict thread policy is on (tests).
  */
 public class DatabaseHelper extends SQLiteOpenHelper {
 
     private static final String TAG = "DatabaseHelper";
     private static final String DATABASE_NAME = "brightbuds.db";
-    private static final int DATABASE_VERSION = 3;
+    private static final int DATABASE_VERSION = 11;
 
     // Table names
     public static final String TABLE_CHILD_PROFILE = "ChildProfile";
     public static final String TABLE_CHILD_PROGRESS = "child_progress";
     public static final String TABLE_PROGRESS = TABLE_CHILD_PROGRESS;    // alias for compatibility
     public static final String TABLE_SYNC_QUEUE = "SyncQueue";
+    public static final String TABLE_MODULE_ROLLUP = "child_module_rollup";
+    public static final String TABLE_SYNC_WATERMARK = "sync_watermark";
+    public static final String TABLE_PROGRESS_COUNTERS = "progress_counters";
 
     // Common
     public static final String COLUMN_ID = "id";
@@ -42,16 +69,56 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String COLUMN_STATUS = "status";
     public static final String COLUMN_TIMESTAMP = "timestamp";
     public static final String COLUMN_TIME_SPENT = "time_spent";
-    public static final String COLUMN_SYNC_STATUS = "sync_status"; // 0=pending, 1=synced
+    public static final String COLUMN_SYNC_STATUS = "sync_status"; // 0=pending, 1=synced, 2=quarantined
+    public static final String COLUMN_SYNC_ATTEMPTS = "sync_attempts"; // rejected uploads so far (schema v8)
+    public static final int SYNC_STATUS_QUARANTINED = 2;
+    public static final String COLUMN_PLAYS = "plays";
+
+    // Module rollup (one row per child + module)
+    public static final String COLUMN_BEST_SCORE = "best_score";
+    public static final String COLUMN_TOTAL_PLAYS = "total_plays";
+    public static final String COLUMN_TOTAL_TIME_SPENT = "total_time_spent";
+    public static final String COLUMN_COMPLETED = "completed";
+    public static final String COLUMN_LAST_TIMESTAMP = "last_timestamp";
+
+    // Rollup history folded in by compaction (schema v6)
+    static final String COLUMN_ARCHIVED_ROWS = "archived_rows";
+    static final String COLUMN_ARCHIVED_BEST_SCORE = "archived_best_score";
+    static final String COLUMN_ARCHIVED_PLAYS = "archived_plays";
+    static final String COLUMN_ARCHIVED_TIME_SPENT = "archived_time_spent";
+    static final String COLUMN_ARCHIVED_COMPLETED = "archived_completed";
+    static final String COLUMN_ARCHIVED_LAST_TIMESTAMP = "archived_last_timestamp";
 
     // Sync queue
     public static final String COLUMN_SYNC_ID = "sync_id";
     public static final String COLUMN_TABLE_NAME = "table_name";
     public static final String COLUMN_RECORD_ID = "record_id";
     public static final String COLUMN_OPERATION = "operation";
+    public static final String COLUMN_REVISION = "revision"; // bumped whenever an edit is coalesced in
+
+    // Pull-sync high-watermarks (schema v9)
+    public static final String COLUMN_SCOPE = "scope";
+    public static final String COLUMN_HIGH_WATERMARK = "high_watermark";
+
+    // Per-device additive counters (schema v10)
+    public static final String COLUMN_FIELD = "field";
+    public static final String COLUMN_LOCAL_TOTAL = "local_total";
+    public static final String COLUMN_ACKED = "acked";
+
+    // Indexes (schema v4)
+    static final String INDEX_PROGRESS_SYNC_STATUS = "idx_progress_sync_status";
+    static final String INDEX_PROGRESS_CHILD_MODULE = "idx_progress_child_module";
+    static final String INDEX_PROGRESS_CHILD_TIMESTAMP = "idx_progress_child_timestamp";
+    static final String INDEX_SYNC_QUEUE_STATUS_CREATED = "idx_sync_queue_status_created";
+    static final String INDEX_SYNC_QUEUE_PENDING_RECORD = "idx_sync_queue_pending_record"; // v7, unique
+
+    // Rollup maintenance triggers (schema v5)
+    static final String TRIGGER_ROLLUP_INSERT = "trg_rollup_after_insert";
+    static final String TRIGGER_ROLLUP_UPDATE = "trg_rollup_after_update";
+    static final String TRIGGER_ROLLUP_DELETE = "trg_rollup_after_delete";
 
     // child_progress table
-    private static final String CREATE_TABLE_PROGRESS =
+    static final String CREATE_TABLE_PROGRESS =
             "CREATE TABLE IF NOT EXISTS " + TABLE_CHILD_PROGRESS + " (" +
                     COLUMN_PROGRESS_ID + " TEXT PRIMARY KEY, " +
                     COLUMN_PARENT_ID + " TEXT, " +
@@ -65,7 +132,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     ")";
 
     // SyncQueue table
-    private static final String CREATE_TABLE_SYNC_QUEUE =
+    static final String CREATE_TABLE_SYNC_QUEUE =
             "CREATE TABLE IF NOT EXISTS " + TABLE_SYNC_QUEUE + " (" +
                     COLUMN_SYNC_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
                     COLUMN_TABLE_NAME + " TEXT NOT NULL, " +
@@ -75,8 +142,20 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     COLUMN_CREATED_AT + " DATETIME DEFAULT CURRENT_TIMESTAMP" +
                     ")";
 
-    public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    private static DatabaseHelper instance;
+
+    public static synchronized DatabaseHelper getInstance(Context context) {
+        if (instance == null) instance = new DatabaseHelper(context.getApplicationContext());
+        return instance;
+    }
+
+    private DatabaseHelper(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    @VisibleForTesting
+    DatabaseHelper(Context context, String databaseName) {
+        super(context, databaseName, null, DATABASE_VERSION);
     }
 
     @Override
@@ -84,32 +163,53 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         Log.i(TAG, "Creating local database...");
         db.execSQL(CREATE_TABLE_PROGRESS);
         db.execSQL(CREATE_TABLE_SYNC_QUEUE);
+        DatabaseMigrations.migrate(db, DatabaseMigrations.BASELINE_VERSION, DATABASE_VERSION);
         Log.i(TAG, "✅ Local database created successfully.");
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         Log.w(TAG, "Upgrading DB from " + oldVersion + " to " + newVersion);
-        if (oldVersion < 3) {
-            try {
-                db.execSQL("ALTER TABLE " + TABLE_CHILD_PROGRESS +
-                        " ADD COLUMN " + COLUMN_TIME_SPENT + " INTEGER DEFAULT 0");
-                db.execSQL("ALTER TABLE " + TABLE_CHILD_PROGRESS +
-                        " ADD COLUMN " + COLUMN_SYNC_STATUS + " INTEGER DEFAULT 0");
-                Log.i(TAG, "✅ Database upgraded to version 3");
-            } catch (Exception e) {
-                Log.e(TAG, "⚠️ Upgrade failed, recreating tables", e);
-                db.execSQL("DROP TABLE IF EXISTS " + TABLE_CHILD_PROGRESS);
-                db.execSQL("DROP TABLE IF EXISTS " + TABLE_SYNC_QUEUE);
-                onCreate(db);
-            }
-        }
+        // Runs inside the open helper's transaction: a failed step rolls back
+        // to the old version with every row kept, and is retried on next open.
+        DatabaseMigrations.migrate(db, oldVersion, newVersion);
+        Log.i(TAG, "✅ Database upgraded to version " + newVersion);
     }
 
     @Override
     public void onConfigure(SQLiteDatabase db) {
         super.onConfigure(db);
         db.setForeignKeyConstraintsEnabled(true);
+        db.enableWriteAheadLogging();
+    }
+
+    // THREAD POLICY
+
+    private static volatile boolean strictThreadPolicy = false;
+
+    /** When strict, opening the database on the main thread throws instead of logging */
+    @VisibleForTesting
+    static void setStrictThreadPolicy(boolean strict) {
+        strictThreadPolicy = strict;
+    }
+
+    @Override
+    public SQLiteDatabase getWritableDatabase() {
+        checkNotMainThread();
+        return super.getWritableDatabase();
+    }
+
+    @Override
+    public SQLiteDatabase getReadableDatabase() {
+        checkNotMainThread();
+        return super.getReadableDatabase();
+    }
+
+    private static void checkNotMainThread() {
+        if (Looper.myLooper() != Looper.getMainLooper()) return;
+        String msg = "Database accessed on the main thread; go through ProgressDao";
+        if (strictThreadPolicy) throw new IllegalStateException(msg);
+        Log.w(TAG, "⚠️ " + msg, new Throwable());
     }
 
     // PROGRESS CACHE
@@ -127,7 +227,13 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 score, status, timestamp, timeSpent, false);
     }
 
-    // Overload: explicitly control sync flag
+    /**
+     * Overload: explicitly control sync flag.
+     * Updates the record in place: plays are kept, timeSpent is added, the
+     * best score wins and "completed" is sticky, so repeated saves to one
+     * canonical id never wipe what it has accumulated. isSynced=true never
+     * clears a pending row: it may hold an offline score not uploaded yet.
+     */
     public void insertOrUpdateProgress(String progressId,
                                        String parentId,
                                        String childId,
@@ -139,50 +245,419 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                                        boolean isSynced) {
 
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_PROGRESS_ID, progressId);
-        values.put(COLUMN_PARENT_ID, parentId);
-        values.put(COLUMN_CHILD_ID, childId);
-        values.put(COLUMN_MODULE_ID, moduleId);
-        values.put(COLUMN_SCORE, score);
-        values.put(COLUMN_STATUS, status);
-        values.put(COLUMN_TIMESTAMP, timestamp);
-        values.put(COLUMN_TIME_SPENT, timeSpent);
-        values.put(COLUMN_SYNC_STATUS, isSynced ? 1 : 0);
-
-        db.insertWithOnConflict(TABLE_CHILD_PROGRESS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
-        db.close();
+        db.beginTransaction();
+        try {
+            ensureProgressRow(db, progressId, parentId, childId, moduleId, timestamp);
+            db.execSQL("UPDATE " + TABLE_CHILD_PROGRESS + " SET " +
+                            COLUMN_PARENT_ID + " = ?, " +
+                            COLUMN_CHILD_ID + " = ?, " +
+                            COLUMN_MODULE_ID + " = ?, " +
+                            COLUMN_SCORE + " = max(IFNULL(" + COLUMN_SCORE + ", 0), ?), " +
+                            COLUMN_STATUS + " = " + STICKY_STATUS + ", " +
+                            COLUMN_TIMESTAMP + " = ?, " +
+                            COLUMN_TIME_SPENT + " = IFNULL(" + COLUMN_TIME_SPENT + ", 0) + ?, " +
+                            COLUMN_SYNC_STATUS + " = min(IFNULL(" + COLUMN_SYNC_STATUS + ", 1), ?), " +
+                            COLUMN_SYNC_ATTEMPTS + " = 0" +
+                            " WHERE " + COLUMN_PROGRESS_ID + " = ?",
+                    new Object[]{parentId, childId, moduleId, score, status, timestamp,
+                            Math.max(0L, timeSpent), isSynced ? 1 : 0, progressId});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
 
         Log.d(TAG, "📦 Cached progress [" + progressId + "] synced=" + isSynced);
     }
 
+    private static final String STATUS_COMPLETED = "completed";
+    /** Bound status unless the row is already completed */
+    private static final String STICKY_STATUS = "CASE WHEN " + COLUMN_STATUS + " = '" +
+            STATUS_COMPLETED + "' THEN '" + STATUS_COMPLETED + "' ELSE ? END";
+
+    /** Empty synced row with no plays, so in-place updates always have a target */
+    private static void ensureProgressRow(SQLiteDatabase db, String progressId, String parentId,
+                                          String childId, String moduleId, long timestamp) {
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_CHILD_PROGRESS + " (" +
+                        COLUMN_PROGRESS_ID + ", " + COLUMN_PARENT_ID + ", " +
+                        COLUMN_CHILD_ID + ", " + COLUMN_MODULE_ID + ", " +
+                        COLUMN_SCORE + ", " + COLUMN_TIMESTAMP + ", " + COLUMN_TIME_SPENT + ", " +
+                        COLUMN_PLAYS + ", " + COLUMN_SYNC_STATUS + ") VALUES (?, ?, ?, ?, 0, ?, 0, 0, 1)",
+                new Object[]{progressId, parentId, childId, moduleId, timestamp});
+    }
+
+    /**
+     * Upserts many progress rows in one transaction through a single
+     * precompiled statement: one journal commit instead of one per row.
+     * As with {@link #insertOrUpdateProgress}, a row's score never drops
+     * below the cached one and a completed row stays completed.
+     */
+    public void upsertProgressBatch(Collection<Progress> rows, boolean isSynced) {
+        if (rows == null || rows.isEmpty()) return;
+
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement stmt = db.compileStatement(
+                "INSERT OR REPLACE INTO " + TABLE_CHILD_PROGRESS + " (" +
+                        COLUMN_PROGRESS_ID + ", " + COLUMN_PARENT_ID + ", " +
+                        COLUMN_CHILD_ID + ", " + COLUMN_MODULE_ID + ", " +
+                        COLUMN_SCORE + ", " + COLUMN_STATUS + ", " +
+                        COLUMN_TIMESTAMP + ", " + COLUMN_TIME_SPENT + ", " +
+                        COLUMN_SYNC_STATUS + ", " + COLUMN_PLAYS +
+                        ") VALUES (?1, ?2, ?3, ?4, " +
+                        // Subqueries see the row REPLACE is about to delete
+                        "max(?5, IFNULL((SELECT " + COLUMN_SCORE + " FROM " + TABLE_CHILD_PROGRESS +
+                        " WHERE " + COLUMN_PROGRESS_ID + " = ?1), 0)), " +
+                        "CASE WHEN (SELECT " + COLUMN_STATUS + " FROM " + TABLE_CHILD_PROGRESS +
+                        " WHERE " + COLUMN_PROGRESS_ID + " = ?1) = '" + STATUS_COMPLETED +
+                        "' THEN '" + STATUS_COMPLETED + "' ELSE ?6 END, " +
+                        "?7, ?8, ?9, ?10)");
+
+        int written = 0;
+        db.beginTransaction();
+        try {
+            for (Progress p : rows) {
+                if (p == null || p.getProgressId() == null) continue;
+                stmt.clearBindings();
+                stmt.bindString(1, p.getProgressId());
+                bindNullable(stmt, 2, p.getParentId());
+                bindNullable(stmt, 3, p.getChildId());
+                bindNullable(stmt, 4, p.getModuleId());
+                stmt.bindLong(5, (long) p.getScore());
+                bindNullable(stmt, 6, p.getStatus());
+                stmt.bindLong(7, p.getTimestamp());
+                stmt.bindLong(8, p.getTimeSpent());
+                stmt.bindLong(9, isSynced ? 1 : 0);
+                stmt.bindLong(10, Math.max(1, p.getPlays())); // every row is at least one play
+                stmt.executeInsert();
+                written++;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            stmt.close();
+        }
+
+        Log.d(TAG, "📦 Batch cached " + written + " progress rows synced=" + isSynced);
+    }
+
+    private static void bindNullable(SQLiteStatement stmt, int index, String value) {
+        if (value == null) stmt.bindNull(index);
+        else stmt.bindString(index, value);
+    }
+
+    /** Every cached row for the given children, via the child_id indexes */
+    public List<Progress> getProgressForChildren(Collection<String> childIds) {
+        List<Progress> list = new ArrayList<>();
+        if (childIds == null || childIds.isEmpty()) return list;
+
+        Cursor c = getReadableDatabase().query(TABLE_CHILD_PROGRESS,
+                PROGRESS_COLUMNS,
+                COLUMN_CHILD_ID + " IN (" + placeholders(childIds.size()) + ")",
+                childIds.toArray(new String[0]),
+                null, null, null);
+        try (ProgressIterator it = new ProgressIterator(c)) {
+            for (Progress p : it) list.add(p);
+        }
+        return list;
+    }
+
+    /**
+     * Reconciles server rows with the cache in one transaction and returns
+     * only the rows that were new or different. Unchanged rows are not
+     * rewritten, and rows with local edits still waiting to upload are
+     * left alone so a refresh never discards offline progress.
+     */
+    public List<Progress> upsertChangedProgress(Collection<String> childIds, List<Progress> serverRows) {
+        Map<String, Progress> cached = new HashMap<>();
+        for (Progress p : getProgressForChildren(childIds)) cached.put(p.getProgressId(), p);
+
+        Set<String> pendingUpload = new HashSet<>();
+        try (ProgressIterator it = openUnsyncedProgress()) {
+            for (Progress p : it) pendingUpload.add(p.getProgressId());
+        }
+
+        Map<String, Long> unacked = new HashMap<>();
+        for (CounterDelta d : getPendingCounters()) {
+            unacked.put(d.getProgressId() + "/" + d.getField(), d.getPending());
+        }
+
+        List<Progress> changed = new ArrayList<>();
+        for (Progress server : serverRows) {
+            String id = server.getProgressId();
+            if (id == null || pendingUpload.contains(id)) continue;
+            // Server totals lack what this device has not pushed yet
+            Long plays = unacked.get(id + "/plays");
+            Long time = unacked.get(id + "/timeSpent");
+            if (plays != null || time != null) {
+                // Callers may still be reading the server rows; adjust a copy
+                server = copyOf(server);
+                if (plays != null) server.setPlays(server.getPlays() + plays.intValue());
+                if (time != null) server.setTimeSpent(server.getTimeSpent() + time);
+            }
+            Progress local = cached.get(id);
+            if (local == null || !sameCachedFields(local, server)) changed.add(server);
+        }
+
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (Progress server : changed) replaceArchivedTotals(db, server);
+            upsertProgressBatch(changed, true);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return changed;
+    }
+
+    /**
+     * A canonical server document carries cumulative plays and timeSpent.
+     * If compaction already folded an earlier copy of it into the rollup's
+     * archived totals, re-importing it must replace that contribution, not
+     * add to it. Best score, completion and last timestamp are maxima and
+     * stay as they are.
+     */
+    private static void replaceArchivedTotals(SQLiteDatabase db, Progress server) {
+        if (server.getChildId() == null || server.getModuleId() == null) return;
+        if (!Progress.canonicalId(server.getChildId(), server.getModuleId()).equals(server.getProgressId())) return;
+
+        db.execSQL("UPDATE " + TABLE_MODULE_ROLLUP + " SET " +
+                        COLUMN_ARCHIVED_PLAYS + " = 0, " +
+                        COLUMN_ARCHIVED_TIME_SPENT + " = 0" +
+                        " WHERE " + COLUMN_CHILD_ID + " = ? AND " + COLUMN_MODULE_ID + " = ?",
+                new Object[]{server.getChildId(), server.getModuleId()});
+    }
+
+    /**
+     * Applies a delta pull and advances its watermark in the same
+     * transaction, so a crash can never record rows as pulled without them
+     * being cached. The watermark only moves forward.
+     */
+    public List<Progress> mergeProgressDelta(Collection<String> childIds,
+                                             List<Progress> serverRows,
+                                             String scope,
+                                             long newWatermark) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            List<Progress> changed = upsertChangedProgress(childIds, serverRows);
+            advanceWatermark(db, scope, newWatermark);
+            db.setTransactionSuccessful();
+            return changed;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static void advanceWatermark(SQLiteDatabase db, String scope, long mark) {
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_SYNC_WATERMARK +
+                " (" + COLUMN_SCOPE + ", " + COLUMN_HIGH_WATERMARK + ") VALUES (?, 0)",
+                new Object[]{scope});
+        db.execSQL("UPDATE " + TABLE_SYNC_WATERMARK + " SET " + COLUMN_HIGH_WATERMARK +
+                        " = max(" + COLUMN_HIGH_WATERMARK + ", ?) WHERE " + COLUMN_SCOPE + " = ?",
+                new Object[]{mark, scope});
+    }
+
+    /** Last high-watermark stored for a pull scope, or 0 if it has never been pulled */
+    public long getWatermark(String scope) {
+        try (Cursor c = getReadableDatabase().query(TABLE_SYNC_WATERMARK,
+                new String[]{COLUMN_HIGH_WATERMARK},
+                COLUMN_SCOPE + "=?", new String[]{scope}, null, null, null)) {
+            return c.moveToFirst() ? c.getLong(0) : 0L;
+        }
+    }
+
+    private static Progress copyOf(Progress p) {
+        Progress c = new Progress();
+        c.setProgressId(p.getProgressId());
+        c.setParentId(p.getParentId());
+        c.setChildId(p.getChildId());
+        c.setModuleId(p.getModuleId());
+        c.setStatus(p.getStatus());
+        c.setScore(p.getScore());
+        c.setTimeSpent(p.getTimeSpent());
+        c.setTimestamp(p.getTimestamp());
+        c.setPlays(p.getPlays());
+        c.setType(p.getType());
+        c.setCompletionStatus(p.isCompletionStatus());
+        c.setLastUpdated(p.getLastUpdated());
+        return c;
+    }
+
+    /** Compares only what child_progress stores, as stored */
+    private static boolean sameCachedFields(Progress a, Progress b) {
+        return Objects.equals(a.getParentId(), b.getParentId())
+                && Objects.equals(a.getChildId(), b.getChildId())
+                && Objects.equals(a.getModuleId(), b.getModuleId())
+                && Objects.equals(a.getStatus(), b.getStatus())
+                && (long) a.getScore() == (long) b.getScore()
+                && a.getTimestamp() == b.getTimestamp()
+                && a.getTimeSpent() == b.getTimeSpent()
+                && Math.max(1, a.getPlays()) == Math.max(1, b.getPlays());
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) sb.append(i == 0 ? "?" : ",?");
+        return sb.toString();
+    }
+
     /** Full unsynced rows for Progress sync */
     public List<Progress> getUnsyncedProgressDetails() {
         List<Progress> list = new ArrayList<>();
-        SQLiteDatabase db = this.getReadableDatabase();
+        try (ProgressIterator it = openUnsyncedProgress()) {
+            for (Progress p : it) list.add(p);
+        }
+        return list;
+    }
 
+    /** Lazily iterates unsynced rows; caller must close the iterator */
+    public ProgressIterator openUnsyncedProgress() {
+        SQLiteDatabase db = this.getReadableDatabase();
         Cursor c = db.query(TABLE_CHILD_PROGRESS,
+                PROGRESS_COLUMNS,
+                COLUMN_SYNC_STATUS + "=0",
+                null, null, null, null);
+        return new ProgressIterator(c);
+    }
+
+    /** Visits unsynced rows one at a time without building a list */
+    public int forEachUnsyncedProgress(CursorIterator.RowVisitor<Progress> visitor) {
+        return openUnsyncedProgress().visitRemaining(visitor);
+    }
+
+    /** Number of progress rows still waiting to be uploaded */
+    public long countUnsynced() {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(),
+                TABLE_CHILD_PROGRESS, COLUMN_SYNC_STATUS + "=0");
+    }
+
+    /** Number of queued operations still waiting to be replayed */
+    public long countPendingSyncQueue() {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(),
+                TABLE_SYNC_QUEUE, COLUMN_SYNC_STATUS + "=0");
+    }
+
+    private static final String[] PROGRESS_COLUMNS = {
+            COLUMN_PROGRESS_ID, COLUMN_PARENT_ID, COLUMN_CHILD_ID, COLUMN_MODULE_ID,
+            COLUMN_SCORE, COLUMN_STATUS, COLUMN_TIMESTAMP, COLUMN_TIME_SPENT, COLUMN_PLAYS
+    };
+
+    /** Maps child_progress rows to Progress; column indices resolved once */
+    public static final class ProgressIterator extends CursorIterator<Progress> {
+        private final int idIdx, parentIdx, childIdx, moduleIdx, scoreIdx, statusIdx, tsIdx, timeIdx, playsIdx;
+
+        ProgressIterator(Cursor c) {
+            super(c);
+            idIdx = c.getColumnIndexOrThrow(COLUMN_PROGRESS_ID);
+            parentIdx = c.getColumnIndexOrThrow(COLUMN_PARENT_ID);
+            childIdx = c.getColumnIndexOrThrow(COLUMN_CHILD_ID);
+            moduleIdx = c.getColumnIndexOrThrow(COLUMN_MODULE_ID);
+            scoreIdx = c.getColumnIndexOrThrow(COLUMN_SCORE);
+            statusIdx = c.getColumnIndexOrThrow(COLUMN_STATUS);
+            tsIdx = c.getColumnIndexOrThrow(COLUMN_TIMESTAMP);
+            timeIdx = c.getColumnIndexOrThrow(COLUMN_TIME_SPENT);
+            playsIdx = c.getColumnIndexOrThrow(COLUMN_PLAYS);
+        }
+
+        @Override
+        protected Progress read(Cursor c) {
+            Progress p = new Progress();
+            p.setProgressId(c.getString(idIdx));
+            p.setParentId(c.getString(parentIdx));
+            p.setChildId(c.getString(childIdx));
+            p.setModuleId(c.getString(moduleIdx));
+            p.setScore(c.getInt(scoreIdx));
+            p.setStatus(c.getString(statusIdx));
+            p.setTimestamp(c.getLong(tsIdx));
+            p.setTimeSpent(c.getLong(timeIdx));
+            p.setPlays(c.getInt(playsIdx));
+            return p;
+        }
+    }
+
+    /**
+     * One page of a child's cached history, newest first, using keyset
+     * pagination on (timestamp, progress_id). Served by the
+     * (child_id, timestamp) index, so later pages cost the same as the first.
+     *
+     * @param after key of the last row of the previous page, or null for the first page
+     */
+    public List<Progress> getProgressPage(String childId, ProgressPage.Key after, int limit) {
+        String selection;
+        String[] args;
+        if (after == null) {
+            selection = COLUMN_CHILD_ID + "=?";
+            args = new String[]{childId};
+        } else {
+            String ts = String.valueOf(after.getTimestamp());
+            selection = COLUMN_CHILD_ID + "=? AND (" +
+                    COLUMN_TIMESTAMP + "<? OR (" +
+                    COLUMN_TIMESTAMP + "=? AND " + COLUMN_PROGRESS_ID + "<?))";
+            args = new String[]{childId, ts, ts, after.getProgressId()};
+        }
+
+        Cursor c = getReadableDatabase().query(TABLE_CHILD_PROGRESS,
+                PROGRESS_COLUMNS,
+                selection,
+                args,
+                null, null,
+                COLUMN_TIMESTAMP + " DESC, " + COLUMN_PROGRESS_ID + " DESC",
+                String.valueOf(limit));
+
+        List<Progress> page = new ArrayList<>(Math.min(limit, 64));
+        try (ProgressIterator it = new ProgressIterator(c)) {
+            for (Progress p : it) page.add(p);
+        }
+        return page;
+    }
+
+    // MODULE ROLLUP
+
+    /** Pre-aggregated rows for the given children: at most one per (child, module) */
+    public List<ModuleRollup> getModuleRollups(Collection<String> childIds) {
+        List<ModuleRollup> rollups = new ArrayList<>();
+        if (childIds == null || childIds.isEmpty()) return rollups;
+
+        Cursor c = getReadableDatabase().query(TABLE_MODULE_ROLLUP,
                 null,
-                COLUMN_SYNC_STATUS + "=?",
-                new String[]{"0"},
+                COLUMN_CHILD_ID + " IN (" + placeholders(childIds.size()) + ")",
+                childIds.toArray(new String[0]),
                 null, null, null);
+        try (RollupIterator it = new RollupIterator(c)) {
+            for (ModuleRollup r : it) rollups.add(r);
+        }
+        return rollups;
+    }
 
-        while (c.moveToNext()) {
-            Progress p = new Progress();
-            p.setProgressId(c.getString(c.getColumnIndexOrThrow(COLUMN_PROGRESS_ID)));
-            p.setParentId(c.getString(c.getColumnIndexOrThrow(COLUMN_PARENT_ID)));
-            p.setChildId(c.getString(c.getColumnIndexOrThrow(COLUMN_CHILD_ID)));
-            p.setModuleId(c.getString(c.getColumnIndexOrThrow(COLUMN_MODULE_ID)));
-            p.setScore(c.getInt(c.getColumnIndexOrThrow(COLUMN_SCORE)));
-            p.setStatus(c.getString(c.getColumnIndexOrThrow(COLUMN_STATUS)));
-            p.setTimestamp(c.getLong(c.getColumnIndexOrThrow(COLUMN_TIMESTAMP)));
-            p.setTimeSpent(c.getLong(c.getColumnIndexOrThrow(COLUMN_TIME_SPENT)));
-            list.add(p);
-        }
-
-        c.close();
-        db.close();
-        return list;
+    /** Maps child_module_rollup rows to ModuleRollup; column indices resolved once */
+    public static final class RollupIterator extends CursorIterator<ModuleRollup> {
+        private final int childIdx, moduleIdx, parentIdx, bestIdx, playsIdx, timeIdx, completedIdx, lastIdx;
+
+        RollupIterator(Cursor c) {
+            super(c);
+            childIdx = c.getColumnIndexOrThrow(COLUMN_CHILD_ID);
+            moduleIdx = c.getColumnIndexOrThrow(COLUMN_MODULE_ID);
+            parentIdx = c.getColumnIndexOrThrow(COLUMN_PARENT_ID);
+            bestIdx = c.getColumnIndexOrThrow(COLUMN_BEST_SCORE);
+            playsIdx = c.getColumnIndexOrThrow(COLUMN_TOTAL_PLAYS);
+            timeIdx = c.getColumnIndexOrThrow(COLUMN_TOTAL_TIME_SPENT);
+            completedIdx = c.getColumnIndexOrThrow(COLUMN_COMPLETED);
+            lastIdx = c.getColumnIndexOrThrow(COLUMN_LAST_TIMESTAMP);
+        }
+
+        @Override
+        protected ModuleRollup read(Cursor c) {
+            ModuleRollup r = new ModuleRollup();
+            r.setChildId(c.getString(childIdx));
+            r.setModuleId(c.getString(moduleIdx));
+            r.setParentId(c.getString(parentIdx));
+            r.setBestScore(c.getInt(bestIdx));
+            r.setTotalPlays(c.getInt(playsIdx));
+            r.setTotalTimeSpent(c.getLong(timeIdx));
+            r.setCompleted(c.getInt(completedIdx) != 0);
+            r.setLastTimestamp(c.getLong(lastIdx));
+            return r;
+        }
     }
 
     /** Mark a local progress row as synced */
@@ -193,10 +668,95 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         db.update(TABLE_CHILD_PROGRESS, values,
                 COLUMN_PROGRESS_ID + "=?",
                 new String[]{progressId});
-        db.close();
         Log.d(TAG, "✅ Marked as synced: " + progressId);
     }
 
+    /**
+     * Marks a set of uploaded rows synced in one transaction. A row is left
+     * unsynced if it has been rewritten locally since it was read for upload.
+     * @return number of rows marked
+     */
+    public int markProgressBatchSynced(Collection<Progress> uploaded) {
+        if (uploaded == null || uploaded.isEmpty()) return 0;
+
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement stmt = db.compileStatement(
+                "UPDATE " + TABLE_CHILD_PROGRESS + " SET " + COLUMN_SYNC_STATUS + " = 1" +
+                        " WHERE " + COLUMN_PROGRESS_ID + " = ? AND " + COLUMN_TIMESTAMP + " = ?");
+
+        int marked = 0;
+        db.beginTransaction();
+        try {
+            for (Progress p : uploaded) {
+                if (p == null || p.getProgressId() == null) continue;
+                stmt.clearBindings();
+                stmt.bindString(1, p.getProgressId());
+                stmt.bindLong(2, p.getTimestamp());
+                marked += stmt.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            stmt.close();
+        }
+
+        Log.d(TAG, "✅ Marked " + marked + "/" + uploaded.size() + " progress rows as synced");
+        return marked;
+    }
+
+    /**
+     * Counts a rejected upload against each row. Rows that reach maxAttempts
+     * are quarantined: they keep their data but leave the unsynced set, so
+     * later drains skip them. A row rewritten locally since it was read is
+     * left alone; the new data gets a fresh set of attempts.
+     * @return number of rows newly quarantined
+     */
+    public int recordProgressSyncFailures(Collection<Progress> rejected, int maxAttempts) {
+        if (rejected == null || rejected.isEmpty()) return 0;
+
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement bump = db.compileStatement(
+                "UPDATE " + TABLE_CHILD_PROGRESS + " SET " +
+                        COLUMN_SYNC_ATTEMPTS + " = " + COLUMN_SYNC_ATTEMPTS + " + 1" +
+                        " WHERE " + COLUMN_PROGRESS_ID + " = ? AND " + COLUMN_TIMESTAMP + " = ?" +
+                        " AND " + COLUMN_SYNC_STATUS + " = 0");
+        SQLiteStatement park = db.compileStatement(
+                "UPDATE " + TABLE_CHILD_PROGRESS + " SET " + COLUMN_SYNC_STATUS + " = " + SYNC_STATUS_QUARANTINED +
+                        " WHERE " + COLUMN_PROGRESS_ID + " = ? AND " + COLUMN_SYNC_STATUS + " = 0" +
+                        " AND " + COLUMN_SYNC_ATTEMPTS + " >= ?");
+
+        int quarantined = 0;
+        db.beginTransaction();
+        try {
+            for (Progress p : rejected) {
+                if (p == null || p.getProgressId() == null) continue;
+                bump.clearBindings();
+                bump.bindString(1, p.getProgressId());
+                bump.bindLong(2, p.getTimestamp());
+                if (bump.executeUpdateDelete() == 0) continue;
+
+                park.clearBindings();
+                park.bindString(1, p.getProgressId());
+                park.bindLong(2, maxAttempts);
+                quarantined += park.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            bump.close();
+            park.close();
+        }
+
+        if (quarantined > 0) Log.w(TAG, "⚠️ Quarantined " + quarantined + " progress rows after " + maxAttempts + " rejections");
+        return quarantined;
+    }
+
+    /** Number of rows parked by {@link #recordProgressSyncFailures} */
+    public long countQuarantinedProgress() {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(),
+                TABLE_CHILD_PROGRESS, COLUMN_SYNC_STATUS + "=" + SYNC_STATUS_QUARANTINED);
+    }
+
     // Generic for legacy SyncQueue
     public void markAsSynced(String tableName, String recordId) {
         SQLiteDatabase db = this.getWritableDatabase();
@@ -205,43 +765,354 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         db.update(tableName, values,
                 COLUMN_RECORD_ID + "=?",
                 new String[]{recordId});
-        db.close();
+    }
+
+    // COUNTERS
+
+    /**
+     * Adds this device's contribution to additive fields of one progress
+     * document. Negative deltas are ignored: each device's counter only grows.
+     * The cached child_progress row gets the same amounts in the same
+     * transaction, so local totals match what CounterSync will push.
+     */
+    public void addCounterDeltas(String progressId, String parentId, String childId,
+                                 String moduleId, Map<String, Long> deltas) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ensureProgressRow(db, progressId, parentId, childId, moduleId, System.currentTimeMillis());
+            for (Map.Entry<String, Long> delta : deltas.entrySet()) {
+                if (delta.getValue() == null || delta.getValue() <= 0) continue;
+                String column = counterColumn(delta.getKey());
+                if (column != null) {
+                    db.execSQL("UPDATE " + TABLE_CHILD_PROGRESS + " SET " +
+                                    column + " = IFNULL(" + column + ", 0) + ?" +
+                                    " WHERE " + COLUMN_PROGRESS_ID + " = ?",
+                            new Object[]{delta.getValue(), progressId});
+                }
+                db.execSQL("INSERT OR IGNORE INTO " + TABLE_PROGRESS_COUNTERS + " (" +
+                                COLUMN_PROGRESS_ID + ", " + COLUMN_FIELD + ", " + COLUMN_PARENT_ID + ", " +
+                                COLUMN_CHILD_ID + ", " + COLUMN_MODULE_ID + ") VALUES (?, ?, ?, ?, ?)",
+                        new Object[]{progressId, delta.getKey(), parentId, childId, moduleId});
+                db.execSQL("UPDATE " + TABLE_PROGRESS_COUNTERS + " SET " +
+                                COLUMN_LOCAL_TOTAL + " = " + COLUMN_LOCAL_TOTAL + " + ?" +
+                                " WHERE " + COLUMN_PROGRESS_ID + " = ? AND " + COLUMN_FIELD + " = ?",
+                        new Object[]{delta.getValue(), progressId, delta.getKey()});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Replay variant: applies the deltas only if replayMark is past the mark
+     * stored for replayScope, and stores the new mark in the same
+     * transaction. Replaying the same journal events after a crash is then
+     * a no-op.
+     * @return false if these deltas had already been applied
+     */
+    public boolean addCounterDeltas(String progressId, String parentId, String childId,
+                                    String moduleId, Map<String, Long> deltas,
+                                    String replayScope, long replayMark) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            if (getWatermark(replayScope) >= replayMark) return false;
+            addCounterDeltas(progressId, parentId, childId, moduleId, deltas);
+            advanceWatermark(db, replayScope, replayMark);
+            db.setTransactionSuccessful();
+            return true;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** child_progress column mirroring a counter field, or null if it has none */
+    private static String counterColumn(String field) {
+        if ("plays".equals(field)) return COLUMN_PLAYS;
+        if ("timeSpent".equals(field)) return COLUMN_TIME_SPENT;
+        return null;
+    }
+
+    /** Counters with contributions the server has not acknowledged yet */
+    public List<CounterDelta> getPendingCounters() {
+        List<CounterDelta> pending = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().query(TABLE_PROGRESS_COUNTERS,
+                new String[]{COLUMN_PROGRESS_ID, COLUMN_PARENT_ID, COLUMN_CHILD_ID, COLUMN_MODULE_ID,
+                        COLUMN_FIELD, COLUMN_LOCAL_TOTAL, COLUMN_ACKED},
+                COLUMN_LOCAL_TOTAL + " > " + COLUMN_ACKED,
+                null, null, null, COLUMN_PROGRESS_ID)) {
+            while (c.moveToNext()) {
+                pending.add(new CounterDelta(c.getString(0), c.getString(1), c.getString(2),
+                        c.getString(3), c.getString(4), c.getLong(5), c.getLong(6)));
+            }
+        }
+        return pending;
+    }
+
+    /** Records that the server has applied each counter up to the total that was sent */
+    public void ackCounters(Collection<CounterDelta> sent) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (CounterDelta d : sent) {
+                db.execSQL("UPDATE " + TABLE_PROGRESS_COUNTERS + " SET " +
+                                COLUMN_ACKED + " = max(" + COLUMN_ACKED + ", ?)" +
+                                " WHERE " + COLUMN_PROGRESS_ID + " = ? AND " + COLUMN_FIELD + " = ?",
+                        new Object[]{d.getLocalTotal(), d.getProgressId(), d.getField()});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // RETENTION
+
+    /** Folds and deletes synced history older than the cutoff, then reclaims space */
+    DatabaseCompaction.Result compact(long cutoffMillis) {
+        return DatabaseCompaction.compact(getWritableDatabase(), cutoffMillis);
+    }
+
+    /**
+     * Re-keys every child_progress row to {@link Progress#canonicalId}. Rows
+     * of the same (child, module) are merged into one: latest status and
+     * timestamp, best score, summed plays and time_spent, so the rollup
+     * totals stay the same. The merged row stays pending if any of them was.
+     *
+     * Once a synced canonical row exists, synced legacy rows are copies of
+     * server documents it already accounts for (re-pulled before the remote
+     * merge ran), so they are dropped rather than added again. That keeps
+     * repeated runs from counting the same history twice.
+     * @return number of rows merged away
+     */
+    public int collapseDuplicateProgress() {
+        return collapseDuplicateProgress(getWritableDatabase());
+    }
+
+    static int collapseDuplicateProgress(SQLiteDatabase db) {
+        List<String[]> groups = new ArrayList<>();
+        try (Cursor c = db.rawQuery("SELECT DISTINCT " + COLUMN_CHILD_ID + ", " + COLUMN_MODULE_ID +
+                " FROM " + TABLE_CHILD_PROGRESS +
+                " WHERE " + COLUMN_CHILD_ID + " IS NOT NULL AND " + COLUMN_MODULE_ID + " IS NOT NULL" +
+                " AND " + COLUMN_PROGRESS_ID + " != " + COLUMN_CHILD_ID + " || '_' || " + COLUMN_MODULE_ID,
+                null)) {
+            while (c.moveToNext()) groups.add(new String[]{c.getString(0), c.getString(1)});
+        }
+        if (groups.isEmpty()) return 0;
+
+        String where = COLUMN_CHILD_ID + " = ? AND " + COLUMN_MODULE_ID + " = ?";
+        int merged = 0;
+        db.beginTransaction();
+        try {
+            for (String[] key : groups) {
+                String canonicalId = Progress.canonicalId(key[0], key[1]);
+                boolean canonicalSynced = DatabaseUtils.queryNumEntries(db, TABLE_CHILD_PROGRESS,
+                        COLUMN_PROGRESS_ID + " = ? AND " + COLUMN_SYNC_STATUS + " = 1",
+                        new String[]{canonicalId}) > 0;
+
+                ContentValues row = null;
+                int bestScore = 0;
+                long timeSpent = 0L;
+                long plays = 0L;
+                int syncStatus = SYNC_STATUS_QUARANTINED;
+                boolean completed = false;
+                int rows = 0;
+
+                try (Cursor c = db.query(TABLE_CHILD_PROGRESS,
+                        new String[]{COLUMN_PARENT_ID, COLUMN_SCORE, COLUMN_STATUS, COLUMN_TIMESTAMP,
+                                COLUMN_TIME_SPENT, COLUMN_PLAYS, COLUMN_SYNC_STATUS, COLUMN_PROGRESS_ID},
+                        where, key, null, null, COLUMN_TIMESTAMP + " DESC")) {
+                    while (c.moveToNext()) {
+                        rows++;
+                        boolean serverCopy = canonicalSynced && c.getInt(6) == 1
+                                && !canonicalId.equals(c.getString(7));
+                        if (serverCopy) continue;
+
+                        if (row == null) { // newest row
+                            row = new ContentValues();
+                            row.put(COLUMN_PARENT_ID, c.getString(0));
+                            row.put(COLUMN_STATUS, c.getString(2));
+                            row.put(COLUMN_TIMESTAMP, c.getLong(3));
+                        }
+                        bestScore = Math.max(bestScore, c.getInt(1));
+                        completed |= c.getInt(1) >= 70 || "completed".equalsIgnoreCase(c.getString(2));
+                        timeSpent += c.getLong(4);
+                        plays += c.isNull(5) ? 1 : c.getLong(5);
+                        syncStatus = Math.min(syncStatus, c.getInt(6));
+                    }
+                }
+                if (row == null) continue;
+
+                row.put(COLUMN_PROGRESS_ID, canonicalId);
+                row.put(COLUMN_CHILD_ID, key[0]);
+                row.put(COLUMN_MODULE_ID, key[1]);
+                row.put(COLUMN_SCORE, bestScore);
+                if (completed) row.put(COLUMN_STATUS, "completed");
+                row.put(COLUMN_TIME_SPENT, timeSpent);
+                row.put(COLUMN_PLAYS, plays);
+                row.put(COLUMN_SYNC_STATUS, syncStatus);
+
+                db.delete(TABLE_CHILD_PROGRESS, where, key);
+                db.insert(TABLE_CHILD_PROGRESS, null, row);
+                merged += rows - 1;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        Log.i(TAG, "✅ Re-keyed " + groups.size() + " progress records, merged " + merged + " duplicates");
+        return merged;
     }
 
     // SYNC QUEUE
 
+    /**
+     * Queues a remote operation, coalescing with any pending entry for the
+     * same (table_name, record_id) per {@link SyncQueueCoalescing}. The queue
+     * therefore holds at most one pending row per record touched.
+     */
     public void addToSyncQueue(String tableName, String recordId, String operation) {
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_TABLE_NAME, tableName);
-        values.put(COLUMN_RECORD_ID, recordId);
-        values.put(COLUMN_OPERATION, operation);
-        db.insert(TABLE_SYNC_QUEUE, null, values);
-        db.close();
-        Log.d(TAG, "📤 Added to sync queue → " + tableName + " / " + recordId);
+        db.beginTransaction();
+        try {
+            String existingId = null;
+            String existingOp = null;
+            try (Cursor c = db.query(TABLE_SYNC_QUEUE,
+                    new String[]{COLUMN_SYNC_ID, COLUMN_OPERATION},
+                    COLUMN_TABLE_NAME + "=? AND " + COLUMN_RECORD_ID + "=? AND " + COLUMN_SYNC_STATUS + "=0",
+                    new String[]{tableName, recordId},
+                    null, null, null)) {
+                if (c.moveToFirst()) {
+                    existingId = c.getString(0);
+                    existingOp = c.getString(1);
+                }
+            }
+
+            if (existingId == null) {
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_TABLE_NAME, tableName);
+                values.put(COLUMN_RECORD_ID, recordId);
+                values.put(COLUMN_OPERATION, operation);
+                db.insert(TABLE_SYNC_QUEUE, null, values);
+                Log.d(TAG, "📤 Added to sync queue → " + tableName + " / " + recordId);
+            } else {
+                String merged = SyncQueueCoalescing.merge(existingOp, operation);
+                if (merged == null) {
+                    db.delete(TABLE_SYNC_QUEUE, COLUMN_SYNC_ID + "=?", new String[]{existingId});
+                    Log.d(TAG, "📤 " + existingOp + "+" + operation + " cancelled out → " + recordId);
+                } else {
+                    db.execSQL("UPDATE " + TABLE_SYNC_QUEUE + " SET " +
+                                    COLUMN_OPERATION + "=?, " + COLUMN_REVISION + "=" + COLUMN_REVISION + "+1" +
+                                    " WHERE " + COLUMN_SYNC_ID + "=?",
+                            new Object[]{merged, existingId});
+                    Log.d(TAG, "📤 Coalesced " + existingOp + "+" + operation + " → " + merged + " / " + recordId);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Marks a replayed queue entry as done, unless it changed while the
+     * remote write was in flight. A newer revision stays pending and is
+     * replayed next pass. If an insert was cancelled by a later delete
+     * meanwhile, the insert already reached the server, so a delete is
+     * queued to undo it.
+     *
+     * @return true when the entry was marked synced
+     */
+    public boolean completeQueueItem(SyncItem item) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_SYNC_STATUS, 1);
+            int updated = db.update(TABLE_SYNC_QUEUE, values,
+                    COLUMN_SYNC_ID + "=? AND " + COLUMN_REVISION + "=?",
+                    new String[]{item.getId(), String.valueOf(item.getRevision())});
+
+            if (updated == 0 && DatabaseUtils.queryNumEntries(db, TABLE_SYNC_QUEUE,
+                    COLUMN_SYNC_ID + "=?", new String[]{item.getId()}) == 0) {
+                addToSyncQueue(item.getTableName(), item.getRecordId(), SyncQueueCoalescing.OP_DELETE);
+            }
+            db.setTransactionSuccessful();
+            return updated > 0;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Counts a rejected replay against a queue entry and quarantines it once
+     * it reaches maxAttempts. An entry coalesced with a newer edit meanwhile
+     * is left pending.
+     * @return true when the entry was quarantined
+     */
+    public boolean recordQueueSyncFailure(SyncItem item, int maxAttempts) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.execSQL("UPDATE " + TABLE_SYNC_QUEUE + " SET " +
+                        COLUMN_SYNC_ATTEMPTS + " = " + COLUMN_SYNC_ATTEMPTS + " + 1, " +
+                        COLUMN_SYNC_STATUS + " = CASE WHEN " + COLUMN_SYNC_ATTEMPTS + " + 1 >= ?" +
+                        " THEN " + SYNC_STATUS_QUARANTINED + " ELSE 0 END" +
+                        " WHERE " + COLUMN_SYNC_ID + " = ? AND " + COLUMN_REVISION + " = ?" +
+                        " AND " + COLUMN_SYNC_STATUS + " = 0",
+                new Object[]{maxAttempts, item.getId(), item.getRevision()});
+
+        boolean quarantined = DatabaseUtils.queryNumEntries(db, TABLE_SYNC_QUEUE,
+                COLUMN_SYNC_ID + "=? AND " + COLUMN_SYNC_STATUS + "=" + SYNC_STATUS_QUARANTINED,
+                new String[]{item.getId()}) > 0;
+        if (quarantined) {
+            Log.w(TAG, "⚠️ Quarantined queued " + item.getOperation() + " → " + item.getRecordId());
+        }
+        return quarantined;
     }
 
     public List<SyncItem> getSyncQueue() {
         List<SyncItem> queue = new ArrayList<>();
-        SQLiteDatabase db = this.getReadableDatabase();
+        try (SyncItemIterator it = openSyncQueue()) {
+            for (SyncItem item : it) queue.add(item);
+        }
+        return queue;
+    }
 
+    /** Lazily iterates pending queue entries, oldest first; caller must close it */
+    public SyncItemIterator openSyncQueue() {
+        SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.query(TABLE_SYNC_QUEUE,
-                null,
+                new String[]{COLUMN_SYNC_ID, COLUMN_TABLE_NAME, COLUMN_OPERATION, COLUMN_RECORD_ID, COLUMN_REVISION},
                 COLUMN_SYNC_STATUS + "=0",
                 null, null, null,
                 COLUMN_CREATED_AT + " ASC");
+        return new SyncItemIterator(cursor);
+    }
 
-        while (cursor.moveToNext()) {
-            SyncItem item = new SyncItem();
-            item.setId(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_SYNC_ID)));
-            item.setTableName(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TABLE_NAME)));
-            item.setOperation(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_OPERATION)));
-            item.setRecordId(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_RECORD_ID)));
-            queue.add(item);
+    /** Maps SyncQueue rows to SyncItem; column indices resolved once */
+    public static final class SyncItemIterator extends CursorIterator<SyncItem> {
+        private final int idIdx, tableIdx, opIdx, recordIdx, revisionIdx;
+
+        SyncItemIterator(Cursor c) {
+            super(c);
+            idIdx = c.getColumnIndexOrThrow(COLUMN_SYNC_ID);
+            tableIdx = c.getColumnIndexOrThrow(COLUMN_TABLE_NAME);
+            opIdx = c.getColumnIndexOrThrow(COLUMN_OPERATION);
+            recordIdx = c.getColumnIndexOrThrow(COLUMN_RECORD_ID);
+            revisionIdx = c.getColumnIndexOrThrow(COLUMN_REVISION);
         }
 
-        cursor.close();
-        db.close();
-        return queue;
+        @Override
+        protected SyncItem read(Cursor c) {
+            SyncItem item = new SyncItem();
+            item.setId(c.getString(idIdx));
+            item.setTableName(c.getString(tableIdx));
+            item.setOperation(c.getString(opIdx));
+            item.setRecordId(c.getString(recordIdx));
+            item.setRevision(c.getInt(revisionIdx));
+            return item;
+        }
     }
 }
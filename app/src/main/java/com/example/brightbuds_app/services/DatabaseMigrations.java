@@ -0,0 +1,342 @@
+package com.example.brightbuds_app.services;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.example.brightbuds_app.services.DatabaseHelper.*;
+
+/**
+ * DatabaseMigrations — Ordered, additive schema steps for brightbuds.db.
+ *
+ * Each step upgrades the schema by exactly one version and must be
+ * idempotent (IF NOT EXISTS / column checks), so a step that partly ran
+ * before a crash can safely run again. Steps never drop or recreate tables
+ * holding user data; a failing step aborts the upgrade transaction and the
+ * database stays at its previous version with all rows intact.
+ *
+ * onCreate builds the v3 baseline and then replays every step, so fresh
+ * installs and upgraded devices end up with the same schema.
+ */
+final class DatabaseMigrations {
+
+    private static final String TAG = "DatabaseMigrations";
+
+    /** Schema version produced by DatabaseHelper's CREATE TABLE statements */
+    static final int BASELINE_VERSION = 3;
+
+    private DatabaseMigrations() { }
+
+    static void migrate(SQLiteDatabase db, int fromVersion, int toVersion) {
+        for (int version = fromVersion + 1; version <= toVersion; version++) {
+            Log.i(TAG, "Applying schema step → v" + version);
+            applyStep(db, version);
+        }
+    }
+
+    private static void applyStep(SQLiteDatabase db, int version) {
+        switch (version) {
+            case 2:
+                // v2 shipped without schema changes
+                break;
+            case 3:
+                migrateToV3(db);
+                break;
+            case 4:
+                migrateToV4(db);
+                break;
+            case 5:
+                migrateToV5(db);
+                break;
+            case 6:
+                migrateToV6(db);
+                break;
+            case 7:
+                migrateToV7(db);
+                break;
+            case 8:
+                migrateToV8(db);
+                break;
+            case 9:
+                migrateToV9(db);
+                break;
+            case 10:
+                migrateToV10(db);
+                break;
+            case 11:
+                migrateToV11(db);
+                break;
+            default:
+                throw new IllegalStateException("No migration defined for schema v" + version);
+        }
+    }
+
+    // v3: time_spent + sync_status on child_progress, SyncQueue table
+    private static void migrateToV3(SQLiteDatabase db) {
+        db.execSQL(CREATE_TABLE_PROGRESS);
+        db.execSQL(CREATE_TABLE_SYNC_QUEUE);
+        addColumnIfMissing(db, TABLE_CHILD_PROGRESS, COLUMN_TIME_SPENT, "INTEGER DEFAULT 0");
+        addColumnIfMissing(db, TABLE_CHILD_PROGRESS, COLUMN_SYNC_STATUS, "INTEGER DEFAULT 0");
+    }
+
+    // v4: secondary indexes for sync scans and per-child lookups
+    private static void migrateToV4(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_PROGRESS_SYNC_STATUS +
+                " ON " + TABLE_CHILD_PROGRESS + " (" + COLUMN_SYNC_STATUS + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_PROGRESS_CHILD_MODULE +
+                " ON " + TABLE_CHILD_PROGRESS + " (" + COLUMN_CHILD_ID + ", " + COLUMN_MODULE_ID + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_PROGRESS_CHILD_TIMESTAMP +
+                " ON " + TABLE_CHILD_PROGRESS + " (" + COLUMN_CHILD_ID + ", " + COLUMN_TIMESTAMP + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_SYNC_QUEUE_STATUS_CREATED +
+                " ON " + TABLE_SYNC_QUEUE + " (" + COLUMN_SYNC_STATUS + ", " + COLUMN_CREATED_AT + ")");
+    }
+
+    // v5: plays column + child_module_rollup kept current by triggers
+    private static void migrateToV5(SQLiteDatabase db) {
+        addColumnIfMissing(db, TABLE_CHILD_PROGRESS, COLUMN_PLAYS, "INTEGER DEFAULT 1");
+
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_MODULE_ROLLUP + " (" +
+                COLUMN_CHILD_ID + " TEXT NOT NULL, " +
+                COLUMN_MODULE_ID + " TEXT NOT NULL, " +
+                COLUMN_PARENT_ID + " TEXT, " +
+                COLUMN_BEST_SCORE + " INTEGER DEFAULT 0, " +
+                COLUMN_TOTAL_PLAYS + " INTEGER DEFAULT 0, " +
+                COLUMN_TOTAL_TIME_SPENT + " INTEGER DEFAULT 0, " +
+                COLUMN_COMPLETED + " INTEGER DEFAULT 0, " +
+                COLUMN_LAST_TIMESTAMP + " INTEGER DEFAULT 0, " +
+                "PRIMARY KEY (" + COLUMN_CHILD_ID + ", " + COLUMN_MODULE_ID + ")" +
+                ")");
+
+        createRollupTriggersV5(db);
+
+        // Backfill from existing history
+        db.execSQL(rollupUpsertSql(null));
+    }
+
+    /**
+     * Each trigger recomputes the affected (child, module) rollup from its raw
+     * rows via idx_progress_child_module. Recomputing instead of adding deltas
+     * keeps the rollup exact under INSERT OR REPLACE, which deletes the old row
+     * without firing the delete trigger. Sync-flag updates do not fire.
+     * Superseded in v6 by {@link #createRollupTriggers}.
+     */
+    private static void createRollupTriggersV5(SQLiteDatabase db) {
+        db.execSQL("DROP TRIGGER IF EXISTS " + TRIGGER_ROLLUP_INSERT);
+        db.execSQL("DROP TRIGGER IF EXISTS " + TRIGGER_ROLLUP_UPDATE);
+        db.execSQL("DROP TRIGGER IF EXISTS " + TRIGGER_ROLLUP_DELETE);
+
+        db.execSQL("CREATE TRIGGER " + TRIGGER_ROLLUP_INSERT +
+                " AFTER INSERT ON " + TABLE_CHILD_PROGRESS + " BEGIN " +
+                rollupUpsertSql("NEW") + "; END");
+
+        db.execSQL("CREATE TRIGGER " + TRIGGER_ROLLUP_UPDATE +
+                " AFTER UPDATE OF " + COLUMN_CHILD_ID + ", " + COLUMN_MODULE_ID + ", " +
+                COLUMN_PARENT_ID + ", " + COLUMN_SCORE + ", " + COLUMN_STATUS + ", " +
+                COLUMN_TIMESTAMP + ", " + COLUMN_TIME_SPENT + ", " + COLUMN_PLAYS +
+                " ON " + TABLE_CHILD_PROGRESS + " BEGIN " +
+                rollupDeleteSql("OLD") + "; " +
+                rollupUpsertSql("OLD") + "; " +
+                rollupUpsertSql("NEW") + "; END");
+
+        db.execSQL("CREATE TRIGGER " + TRIGGER_ROLLUP_DELETE +
+                " AFTER DELETE ON " + TABLE_CHILD_PROGRESS + " BEGIN " +
+                rollupDeleteSql("OLD") + "; " +
+                rollupUpsertSql("OLD") + "; END");
+    }
+
+    /** Rebuilds rollup rows for one key (row = "NEW"/"OLD") or for every key (row = null) */
+    private static String rollupUpsertSql(String row) {
+        String where = row == null
+                ? COLUMN_CHILD_ID + " IS NOT NULL AND " + COLUMN_MODULE_ID + " IS NOT NULL"
+                : COLUMN_CHILD_ID + "=" + row + "." + COLUMN_CHILD_ID +
+                " AND " + COLUMN_MODULE_ID + "=" + row + "." + COLUMN_MODULE_ID;
+
+        return "INSERT OR REPLACE INTO " + TABLE_MODULE_ROLLUP + " (" +
+                COLUMN_CHILD_ID + ", " + COLUMN_MODULE_ID + ", " + COLUMN_PARENT_ID + ", " +
+                COLUMN_BEST_SCORE + ", " + COLUMN_TOTAL_PLAYS + ", " + COLUMN_TOTAL_TIME_SPENT + ", " +
+                COLUMN_COMPLETED + ", " + COLUMN_LAST_TIMESTAMP + ") " +
+                "SELECT " + COLUMN_CHILD_ID + ", " + COLUMN_MODULE_ID + ", " +
+                "MAX(" + COLUMN_PARENT_ID + "), " +
+                "IFNULL(MAX(" + COLUMN_SCORE + "), 0), " +
+                "IFNULL(SUM(" + COLUMN_PLAYS + "), 0), " +
+                "IFNULL(SUM(" + COLUMN_TIME_SPENT + "), 0), " +
+                // Same rule as Progress.isModuleCompleted()
+                "IFNULL(MAX(" + COLUMN_SCORE + " >= 70 OR LOWER(" + COLUMN_STATUS + ") = 'completed'), 0), " +
+                "IFNULL(MAX(" + COLUMN_TIMESTAMP + "), 0) " +
+                "FROM " + TABLE_CHILD_PROGRESS +
+                " WHERE " + where +
+                " GROUP BY " + COLUMN_CHILD_ID + ", " + COLUMN_MODULE_ID;
+    }
+
+    private static String rollupDeleteSql(String row) {
+        return "DELETE FROM " + TABLE_MODULE_ROLLUP +
+                " WHERE " + COLUMN_CHILD_ID + "=" + row + "." + COLUMN_CHILD_ID +
+                " AND " + COLUMN_MODULE_ID + "=" + row + "." + COLUMN_MODULE_ID;
+    }
+
+    // v6: archived_* columns hold history folded out of child_progress by compaction
+    private static void migrateToV6(SQLiteDatabase db) {
+        addColumnIfMissing(db, TABLE_MODULE_ROLLUP, COLUMN_ARCHIVED_ROWS, "INTEGER DEFAULT 0");
+        addColumnIfMissing(db, TABLE_MODULE_ROLLUP, COLUMN_ARCHIVED_BEST_SCORE, "INTEGER DEFAULT 0");
+        addColumnIfMissing(db, TABLE_MODULE_ROLLUP, COLUMN_ARCHIVED_PLAYS, "INTEGER DEFAULT 0");
+        addColumnIfMissing(db, TABLE_MODULE_ROLLUP, COLUMN_ARCHIVED_TIME_SPENT, "INTEGER DEFAULT 0");
+        addColumnIfMissing(db, TABLE_MODULE_ROLLUP, COLUMN_ARCHIVED_COMPLETED, "INTEGER DEFAULT 0");
+        addColumnIfMissing(db, TABLE_MODULE_ROLLUP, COLUMN_ARCHIVED_LAST_TIMESTAMP, "INTEGER DEFAULT 0");
+        createRollupTriggers(db);
+    }
+
+    // v7: SyncQueue coalescing — revision column, existing duplicates merged, one pending row per record
+    private static void migrateToV7(SQLiteDatabase db) {
+        addColumnIfMissing(db, TABLE_SYNC_QUEUE, COLUMN_REVISION, "INTEGER DEFAULT 0");
+
+        Map<String, String[]> pending = new HashMap<>(); // key -> {syncId, operation}
+        try (Cursor c = db.query(TABLE_SYNC_QUEUE,
+                new String[]{COLUMN_SYNC_ID, COLUMN_TABLE_NAME, COLUMN_RECORD_ID, COLUMN_OPERATION},
+                COLUMN_SYNC_STATUS + "=0", null, null, null, COLUMN_SYNC_ID + " ASC")) {
+            while (c.moveToNext()) {
+                String syncId = c.getString(0);
+                String key = c.getString(1) + '\u0000' + c.getString(2);
+                String[] first = pending.get(key);
+                if (first == null) {
+                    pending.put(key, new String[]{syncId, c.getString(3)});
+                    continue;
+                }
+
+                db.delete(TABLE_SYNC_QUEUE, COLUMN_SYNC_ID + "=?", new String[]{syncId});
+                String merged = SyncQueueCoalescing.merge(first[1], c.getString(3));
+                if (merged == null) {
+                    db.delete(TABLE_SYNC_QUEUE, COLUMN_SYNC_ID + "=?", new String[]{first[0]});
+                    pending.remove(key);
+                } else {
+                    first[1] = merged;
+                    ContentValues values = new ContentValues();
+                    values.put(COLUMN_OPERATION, merged);
+                    db.update(TABLE_SYNC_QUEUE, values, COLUMN_SYNC_ID + "=?", new String[]{first[0]});
+                }
+            }
+        }
+
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS " + INDEX_SYNC_QUEUE_PENDING_RECORD +
+                " ON " + TABLE_SYNC_QUEUE + " (" + COLUMN_TABLE_NAME + ", " + COLUMN_RECORD_ID + ")" +
+                " WHERE " + COLUMN_SYNC_STATUS + " = 0");
+    }
+
+    // v8: per-row rejection counters; sync_status 2 marks quarantined rows
+    private static void migrateToV8(SQLiteDatabase db) {
+        addColumnIfMissing(db, TABLE_CHILD_PROGRESS, COLUMN_SYNC_ATTEMPTS, "INTEGER DEFAULT 0");
+        addColumnIfMissing(db, TABLE_SYNC_QUEUE, COLUMN_SYNC_ATTEMPTS, "INTEGER DEFAULT 0");
+    }
+
+    // v9: per-scope high-watermarks for incremental pulls
+    private static void migrateToV9(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_SYNC_WATERMARK + " (" +
+                COLUMN_SCOPE + " TEXT PRIMARY KEY, " +
+                COLUMN_HIGH_WATERMARK + " INTEGER NOT NULL DEFAULT 0" +
+                ")");
+    }
+
+    // v10: this device's G-Counter contributions to additive progress fields
+    private static void migrateToV10(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_PROGRESS_COUNTERS + " (" +
+                COLUMN_PROGRESS_ID + " TEXT NOT NULL, " +
+                COLUMN_FIELD + " TEXT NOT NULL, " +
+                COLUMN_PARENT_ID + " TEXT, " +
+                COLUMN_CHILD_ID + " TEXT, " +
+                COLUMN_MODULE_ID + " TEXT, " +
+                COLUMN_LOCAL_TOTAL + " INTEGER NOT NULL DEFAULT 0, " +
+                COLUMN_ACKED + " INTEGER NOT NULL DEFAULT 0, " +
+                "PRIMARY KEY (" + COLUMN_PROGRESS_ID + ", " + COLUMN_FIELD + ")" +
+                ")");
+    }
+
+    // v11: one child_progress row per (child, module) under its canonical id
+    private static void migrateToV11(SQLiteDatabase db) {
+        DatabaseHelper.collapseDuplicateProgress(db);
+    }
+
+    /**
+     * Current rollup triggers. Each affected (child, module) row is rebuilt
+     * as its archived_* totals combined with the live child_progress rows,
+     * so history removed by compaction still counts. The row is dropped only
+     * once it has neither archived nor live history.
+     */
+    static void createRollupTriggers(SQLiteDatabase db) {
+        dropRollupTriggers(db);
+
+        db.execSQL("CREATE TRIGGER " + TRIGGER_ROLLUP_INSERT +
+                " AFTER INSERT ON " + TABLE_CHILD_PROGRESS + " BEGIN " +
+                rollupRefreshSql("NEW") + " END");
+
+        db.execSQL("CREATE TRIGGER " + TRIGGER_ROLLUP_UPDATE +
+                " AFTER UPDATE OF " + COLUMN_CHILD_ID + ", " + COLUMN_MODULE_ID + ", " +
+                COLUMN_PARENT_ID + ", " + COLUMN_SCORE + ", " + COLUMN_STATUS + ", " +
+                COLUMN_TIMESTAMP + ", " + COLUMN_TIME_SPENT + ", " + COLUMN_PLAYS +
+                " ON " + TABLE_CHILD_PROGRESS + " BEGIN " +
+                rollupRefreshSql("OLD") + " " +
+                rollupRefreshSql("NEW") + " END");
+
+        db.execSQL("CREATE TRIGGER " + TRIGGER_ROLLUP_DELETE +
+                " AFTER DELETE ON " + TABLE_CHILD_PROGRESS + " BEGIN " +
+                rollupRefreshSql("OLD") + " END");
+    }
+
+    static void dropRollupTriggers(SQLiteDatabase db) {
+        db.execSQL("DROP TRIGGER IF EXISTS " + TRIGGER_ROLLUP_INSERT);
+        db.execSQL("DROP TRIGGER IF EXISTS " + TRIGGER_ROLLUP_UPDATE);
+        db.execSQL("DROP TRIGGER IF EXISTS " + TRIGGER_ROLLUP_DELETE);
+    }
+
+    /** Ensure row, recombine archived + live, drop if empty; row = "NEW" or "OLD" */
+    private static String rollupRefreshSql(String row) {
+        String live = " FROM " + TABLE_CHILD_PROGRESS +
+                " WHERE " + COLUMN_CHILD_ID + "=" + row + "." + COLUMN_CHILD_ID +
+                " AND " + COLUMN_MODULE_ID + "=" + row + "." + COLUMN_MODULE_ID + ")";
+        String key = " WHERE " + COLUMN_CHILD_ID + "=" + row + "." + COLUMN_CHILD_ID +
+                " AND " + COLUMN_MODULE_ID + "=" + row + "." + COLUMN_MODULE_ID;
+
+        return "INSERT OR IGNORE INTO " + TABLE_MODULE_ROLLUP +
+                " (" + COLUMN_CHILD_ID + ", " + COLUMN_MODULE_ID + ")" +
+                " SELECT " + row + "." + COLUMN_CHILD_ID + ", " + row + "." + COLUMN_MODULE_ID +
+                " WHERE " + row + "." + COLUMN_CHILD_ID + " IS NOT NULL" +
+                " AND " + row + "." + COLUMN_MODULE_ID + " IS NOT NULL; " +
+
+                "UPDATE " + TABLE_MODULE_ROLLUP + " SET " +
+                COLUMN_PARENT_ID + " = IFNULL((SELECT MAX(" + COLUMN_PARENT_ID + ")" + live + ", " + COLUMN_PARENT_ID + "), " +
+                COLUMN_BEST_SCORE + " = MAX(" + COLUMN_ARCHIVED_BEST_SCORE +
+                ", IFNULL((SELECT MAX(" + COLUMN_SCORE + ")" + live + ", 0)), " +
+                COLUMN_TOTAL_PLAYS + " = " + COLUMN_ARCHIVED_PLAYS +
+                " + IFNULL((SELECT SUM(" + COLUMN_PLAYS + ")" + live + ", 0), " +
+                COLUMN_TOTAL_TIME_SPENT + " = " + COLUMN_ARCHIVED_TIME_SPENT +
+                " + IFNULL((SELECT SUM(" + COLUMN_TIME_SPENT + ")" + live + ", 0), " +
+                // Same rule as Progress.isModuleCompleted()
+                COLUMN_COMPLETED + " = MAX(" + COLUMN_ARCHIVED_COMPLETED +
+                ", IFNULL((SELECT MAX(" + COLUMN_SCORE + " >= 70 OR LOWER(" + COLUMN_STATUS + ") = 'completed')" + live + ", 0)), " +
+                COLUMN_LAST_TIMESTAMP + " = MAX(" + COLUMN_ARCHIVED_LAST_TIMESTAMP +
+                ", IFNULL((SELECT MAX(" + COLUMN_TIMESTAMP + ")" + live + ", 0))" +
+                key + "; " +
+
+                "DELETE FROM " + TABLE_MODULE_ROLLUP + key +
+                " AND " + COLUMN_ARCHIVED_ROWS + " = 0" +
+                " AND NOT EXISTS (SELECT 1" + live + ";";
+    }
+
+    static boolean hasColumn(SQLiteDatabase db, String table, String column) {
+        try (Cursor c = db.rawQuery("PRAGMA table_info(" + table + ")", null)) {
+            int nameIdx = c.getColumnIndexOrThrow("name");
+            while (c.moveToNext()) {
+                if (column.equalsIgnoreCase(c.getString(nameIdx))) return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addColumnIfMissing(SQLiteDatabase db, String table, String column, String definition) {
+        if (!hasColumn(db, table, column)) {
+            db.execSQL("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+}
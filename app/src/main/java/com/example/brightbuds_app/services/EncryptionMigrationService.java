@@ -0,0 +1,160 @@
+package com.example.brightbuds_app.services;
+
+import android.util.Log;
+
+import com.example.brightbuds_app.interfaces.DataCallbacks;
+import com.example.brightbuds_app.utils.EncryptionUtil;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * EncryptionMigrationService
+ * Re-encrypts legacy v1 (AES-CBC) fields as v2 (AES-GCM) in the background.
+ *
+ * Pages through child_profiles and users in document-id order, re-encrypts
+ * any field that is still v1 and writes each page back in a single WriteBatch.
+ * Fields that are plaintext or fail to decrypt are left untouched, so the
+ * pass is safe to re-run and resumes naturally after a failure.
+ */
+public class EncryptionMigrationService {
+
+    private static final String TAG = "EncryptionMigration";
+    private static final int PAGE_SIZE = 200;
+
+    static final String[] CHILD_FIELDS = {"name", "gender", "displayName"};
+    static final String[] USER_FIELDS = {"name", "fullName", "email"};
+
+    // Shared by every instance; LoginActivity creates one per sign-in
+    private static final ExecutorService CRYPTO_EXECUTOR =
+            Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "EncryptionMigration-crypto");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private final FirebaseFirestore db;
+
+    public EncryptionMigrationService() {
+        this.db = FirebaseFirestore.getInstance();
+    }
+
+    /** Migrates the signed-in parent's own user doc and child profiles */
+    public void migrateParentData(String parentId, DataCallbacks.GenericCallback callback) {
+        Query children = db.collection("child_profiles").whereEqualTo("parentId", parentId);
+        Query users = db.collection("users").whereEqualTo(FieldPath.documentId(), parentId);
+
+        migrateQuery(children, CHILD_FIELDS, null, 0, new DataCallbacks.GenericCallback() {
+            @Override
+            public void onSuccess(String childResult) {
+                migrateQuery(users, USER_FIELDS, null, 0, new DataCallbacks.GenericCallback() {
+                    @Override
+                    public void onSuccess(String userResult) {
+                        callback.onSuccess("child_profiles: " + childResult + ", users: " + userResult);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        callback.onFailure(e);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                callback.onFailure(e);
+            }
+        });
+    }
+
+    private void migrateQuery(Query base,
+                              String[] fields,
+                              DocumentSnapshot cursor,
+                              int migratedSoFar,
+                              DataCallbacks.GenericCallback callback) {
+
+        Query page = base.orderBy(FieldPath.documentId()).limit(PAGE_SIZE);
+        if (cursor != null) page = page.startAfter(cursor);
+
+        page.get()
+                .addOnSuccessListener(snapshot -> {
+                    List<DocumentSnapshot> docs = snapshot.getDocuments();
+                    if (docs.isEmpty()) {
+                        Log.i(TAG, "✅ Migration finished, " + migratedSoFar + " docs re-encrypted");
+                        callback.onSuccess(migratedSoFar + " migrated");
+                        return;
+                    }
+
+                    // Crypto off the main thread; Firestore callbacks land back on it
+                    CRYPTO_EXECUTOR.execute(() -> {
+                        WriteBatch batch = db.batch();
+                        int changed = 0;
+
+                        for (DocumentSnapshot doc : docs) {
+                            Map<String, Object> updates = reEncryptFields(doc, fields);
+                            if (!updates.isEmpty()) {
+                                batch.update(doc.getReference(), updates);
+                                changed++;
+                            }
+                        }
+
+                        DocumentSnapshot last = docs.get(docs.size() - 1);
+                        boolean hasMore = docs.size() == PAGE_SIZE;
+                        final int total = migratedSoFar + changed;
+
+                        if (changed == 0) {
+                            continueOrFinish(base, fields, last, hasMore, total, callback);
+                            return;
+                        }
+
+                        final int pageChanged = changed;
+                        batch.commit()
+                                .addOnSuccessListener(unused -> {
+                                    Log.d(TAG, "🔐 Re-encrypted " + pageChanged + " docs in page");
+                                    continueOrFinish(base, fields, last, hasMore, total, callback);
+                                })
+                                .addOnFailureListener(e -> {
+                                    Log.e(TAG, "❌ Migration batch failed", e);
+                                    callback.onFailure(e);
+                                });
+                    });
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "❌ Migration page fetch failed", e);
+                    callback.onFailure(e);
+                });
+    }
+
+    private void continueOrFinish(Query base, String[] fields, DocumentSnapshot last,
+                                  boolean hasMore, int total, DataCallbacks.GenericCallback callback) {
+        if (hasMore) {
+            migrateQuery(base, fields, last, total, callback);
+        } else {
+            Log.i(TAG, "✅ Migration finished, " + total + " docs re-encrypted");
+            callback.onSuccess(total + " migrated");
+        }
+    }
+
+    private Map<String, Object> reEncryptFields(DocumentSnapshot doc, String[] fields) {
+        Map<String, Object> updates = new HashMap<>();
+        for (String field : fields) {
+            String value = doc.getString(field);
+            if (value == null || value.isEmpty() || EncryptionUtil.isV2(value)) continue;
+
+            String plain = EncryptionUtil.decrypt(value);
+            if (plain.isEmpty()) continue; // plaintext or undecryptable: leave as-is
+
+            String upgraded = EncryptionUtil.encrypt(plain);
+            if (!upgraded.isEmpty()) updates.put(field, upgraded);
+        }
+        return updates;
+    }
+}
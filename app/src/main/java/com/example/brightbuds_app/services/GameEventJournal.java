@@ -0,0 +1,370 @@
+package com.example.brightbuds_app.services;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.brightbuds_app.models.Progress;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * GameEventJournal — Append-only, memory-mapped log of in-game progress.
+ *
+ * Games append a small binary event on every scoring event: the latest
+ * score/stars/answers plus the plays and time added since the previous
+ * event. An append
+ * is a bounds check plus a copy into a MappedByteBuffer, so it never
+ * touches SQLite or the network. Mapped pages belong to the kernel, so
+ * appended records survive process death as soon as the copy returns. An
+ * fsync is only needed against power loss; it runs on a background thread
+ * every {@link #setCheckpointInterval checkpoint interval} records or on
+ * {@link #checkpoint()}.
+ *
+ * File layout: a 16-byte header ("BBJ1", version), then records of
+ * [int payloadLength][int crc32][payload], followed by a zero length
+ * marking the tail. On open, the log is scanned until that marker or the
+ * first record whose CRC does not match (a torn write), and appends resume
+ * there.
+ *
+ * {@link DataSyncManager#replayGameJournal} drains the log into Firestore.
+ */
+public final class GameEventJournal {
+
+    private static final String TAG = "GameEventJournal";
+    private static final String FILE_NAME = "game_events.journal";
+
+    private static final int MAGIC = 0x42424A31; // "BBJ1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int FRAME_OVERHEAD = 8; // length + crc
+    private static final int TERMINATOR = 4;
+    private static final int MAX_PAYLOAD = 1024;
+
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final int MAX_CAPACITY = 1024 * 1024;
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 16;
+
+    /** One progress event for a (child, module) game session */
+    public static final class Event {
+        public final String childId;
+        public final String moduleId;
+        public final long timestamp;
+        public final int score;
+        public final long timeSpentDeltaMs;
+        public final int stars;
+        public final int correct;
+        public final int incorrect;
+        public final int playsDelta;
+
+        public Event(String childId, String moduleId, long timestamp, int score, long timeSpentDeltaMs,
+                     int stars, int correct, int incorrect, int playsDelta) {
+            this.childId = childId;
+            this.moduleId = moduleId;
+            this.timestamp = timestamp;
+            this.score = score;
+            this.timeSpentDeltaMs = timeSpentDeltaMs;
+            this.stars = stars;
+            this.correct = correct;
+            this.incorrect = incorrect;
+            this.playsDelta = playsDelta;
+        }
+
+        /** Latest values of this event with the other event's deltas added */
+        Event plusDeltasOf(Event earlier) {
+            return new Event(childId, moduleId, timestamp, score,
+                    timeSpentDeltaMs + earlier.timeSpentDeltaMs,
+                    stars, correct, incorrect, playsDelta + earlier.playsDelta);
+        }
+
+        String sessionKey() {
+            return Progress.canonicalId(childId, moduleId);
+        }
+    }
+
+    /** sync_watermark scope holding the newest event timestamp already replayed for a session */
+    static String replayScope(String sessionKey) {
+        return "game_journal:" + sessionKey;
+    }
+
+    /** Records read by {@link #drain()}; pass back to {@link #commit} once replayed */
+    public static final class Batch {
+        private final List<Event> events;
+        private final int endOffset;
+
+        Batch(List<Event> events, int endOffset) {
+            this.events = events;
+            this.endOffset = endOffset;
+        }
+
+        public boolean isEmpty() {
+            return events.isEmpty();
+        }
+
+        public int size() {
+            return events.size();
+        }
+
+        /** Sessions with at least one event in this batch */
+        public Set<String> sessionKeys() {
+            Set<String> keys = new LinkedHashSet<>();
+            for (Event e : events) keys.add(e.sessionKey());
+            return keys;
+        }
+
+        /**
+         * One event per session: newest score/answers, deltas summed. Events
+         * at or before a session's appliedUpTo timestamp were already
+         * replayed by a run that died before {@link #commit} and are skipped.
+         */
+        public Collection<Event> coalescePerSession(Map<String, Long> appliedUpTo) {
+            Map<String, Event> merged = new LinkedHashMap<>();
+            for (Event e : events) {
+                Long applied = appliedUpTo.get(e.sessionKey());
+                if (applied != null && e.timestamp <= applied) continue;
+                Event earlier = merged.get(e.sessionKey());
+                merged.put(e.sessionKey(), earlier == null ? e : e.plusDeltasOf(earlier));
+            }
+            return merged.values();
+        }
+    }
+
+    private static GameEventJournal instance;
+
+    private final File file;
+    private final CRC32 crc = new CRC32();
+    private final byte[] scratch = new byte[MAX_PAYLOAD];
+    private final ExecutorService fsyncExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "GameEventJournal-fsync");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private RandomAccessFile raf;
+    private MappedByteBuffer map;
+    private int writeOffset;
+    private boolean drainOutstanding; // deltas must be replayed exactly once, so one drain at a time
+    private int sinceCheckpoint;
+    private int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+
+    public static synchronized GameEventJournal getInstance(Context context) {
+        if (instance == null) {
+            instance = new GameEventJournal(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+        }
+        return instance;
+    }
+
+    private GameEventJournal(File file) {
+        this.file = file;
+        try {
+            open();
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Could not open game journal; events will fall back to direct writes", e);
+        }
+    }
+
+    /** Number of appends between background fsyncs; 1 syncs every record */
+    public synchronized void setCheckpointInterval(int records) {
+        checkpointInterval = Math.max(1, records);
+    }
+
+    /**
+     * Appends one event. Constant time apart from rare growth of the map.
+     * @return false if the journal is unavailable or full; the caller should write directly
+     */
+    public synchronized boolean append(Event event) {
+        if (map == null) return false;
+
+        int length;
+        try {
+            length = encode(event, scratch);
+        } catch (BufferOverflowException e) {
+            Log.w(TAG, "⚠️ Event too large for journal");
+            return false;
+        }
+
+        int needed = FRAME_OVERHEAD + length + TERMINATOR;
+        if (writeOffset + needed > map.capacity() && !grow(writeOffset + needed)) {
+            return false;
+        }
+
+        crc.reset();
+        crc.update(scratch, 0, length);
+
+        map.position(writeOffset + FRAME_OVERHEAD);
+        map.put(scratch, 0, length);
+        map.putInt(writeOffset + FRAME_OVERHEAD + length, 0); // new tail marker
+        map.putInt(writeOffset + 4, (int) crc.getValue());
+        map.putInt(writeOffset, length); // written last: the record becomes visible
+        writeOffset += FRAME_OVERHEAD + length;
+
+        if (++sinceCheckpoint >= checkpointInterval) checkpoint();
+        return true;
+    }
+
+    /** Flushes mapped pages to storage on a background thread */
+    public synchronized void checkpoint() {
+        if (map == null || sinceCheckpoint == 0) return;
+        sinceCheckpoint = 0;
+        MappedByteBuffer target = map;
+        fsyncExecutor.execute(target::force);
+    }
+
+    /**
+     * Reads every record currently in the journal without removing it.
+     * Until the batch is committed, further drains return an empty batch.
+     */
+    public synchronized Batch drain() {
+        List<Event> events = new ArrayList<>();
+        if (map == null || drainOutstanding) return new Batch(events, HEADER_SIZE);
+
+        int offset = HEADER_SIZE;
+        while (offset < writeOffset) {
+            int length = map.getInt(offset);
+            map.position(offset + FRAME_OVERHEAD);
+            map.get(scratch, 0, length);
+            events.add(decode(ByteBuffer.wrap(scratch, 0, length)));
+            offset += FRAME_OVERHEAD + length;
+        }
+        drainOutstanding = !events.isEmpty();
+        return new Batch(events, offset);
+    }
+
+    /**
+     * Drops the records covered by a replayed batch. Anything appended while
+     * the replay was in flight is moved to the front and kept.
+     */
+    public synchronized void commit(Batch batch) {
+        if (map == null || batch.isEmpty()) return;
+        drainOutstanding = false;
+
+        int tail = writeOffset - batch.endOffset;
+        if (tail > 0) {
+            byte[] pending = new byte[tail];
+            map.position(batch.endOffset);
+            map.get(pending);
+            map.position(HEADER_SIZE);
+            map.put(pending);
+        }
+        writeOffset = HEADER_SIZE + tail;
+        map.putInt(writeOffset, 0);
+        sinceCheckpoint++;
+        checkpoint();
+    }
+
+    /** Gives up on a drained batch without dropping it; the next drain returns it again */
+    public synchronized void release(Batch batch) {
+        if (!batch.isEmpty()) drainOutstanding = false;
+    }
+
+    // FILE
+
+    private void open() throws IOException {
+        raf = new RandomAccessFile(file, "rw");
+        boolean fresh = raf.length() < HEADER_SIZE + TERMINATOR;
+        int capacity = (int) Math.min(MAX_CAPACITY, Math.max(INITIAL_CAPACITY, raf.length()));
+        map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+        if (fresh || map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+            map.putInt(0, MAGIC);
+            map.putInt(4, VERSION);
+            map.putInt(HEADER_SIZE, 0);
+            writeOffset = HEADER_SIZE;
+            return;
+        }
+
+        writeOffset = recoverTail();
+        Log.d(TAG, "Opened game journal, " + (writeOffset - HEADER_SIZE) + " bytes pending");
+    }
+
+    /** Walks valid records; stops at the tail marker or the first torn/corrupt record */
+    private int recoverTail() {
+        int offset = HEADER_SIZE;
+        while (offset + FRAME_OVERHEAD <= map.capacity()) {
+            int length = map.getInt(offset);
+            if (length <= 0 || length > MAX_PAYLOAD
+                    || offset + FRAME_OVERHEAD + length + TERMINATOR > map.capacity()) break;
+
+            map.position(offset + FRAME_OVERHEAD);
+            map.get(scratch, 0, length);
+            crc.reset();
+            crc.update(scratch, 0, length);
+            if ((int) crc.getValue() != map.getInt(offset + 4)) {
+                Log.w(TAG, "⚠️ Discarding torn journal record at offset " + offset);
+                break;
+            }
+            offset += FRAME_OVERHEAD + length;
+        }
+        map.putInt(offset, 0);
+        return offset;
+    }
+
+    private boolean grow(int required) {
+        int capacity = map.capacity();
+        while (capacity < required && capacity < MAX_CAPACITY) capacity *= 2;
+        if (capacity < required) {
+            Log.w(TAG, "⚠️ Game journal full; waiting for replay");
+            return false;
+        }
+        try {
+            map.force();
+            map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, Math.min(capacity, MAX_CAPACITY));
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "❌ Failed to grow game journal", e);
+            return false;
+        }
+    }
+
+    // ENCODING
+
+    private static int encode(Event e, byte[] out) {
+        ByteBuffer buf = ByteBuffer.wrap(out);
+        putString(buf, e.childId);
+        putString(buf, e.moduleId);
+        buf.putLong(e.timestamp);
+        buf.putInt(e.score);
+        buf.putLong(e.timeSpentDeltaMs);
+        buf.putInt(e.stars);
+        buf.putInt(e.correct);
+        buf.putInt(e.incorrect);
+        buf.putInt(e.playsDelta);
+        return buf.position();
+    }
+
+    private static Event decode(ByteBuffer buf) {
+        String childId = getString(buf);
+        String moduleId = getString(buf);
+        return new Event(childId, moduleId,
+                buf.getLong(), buf.getInt(), buf.getLong(),
+                buf.getInt(), buf.getInt(), buf.getInt(), buf.getInt());
+    }
+
+    private static void putString(ByteBuffer buf, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buf.putShort((short) bytes.length);
+        buf.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getShort()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -3,18 +3,20 @@ package com.example.brightbuds_app.services;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
-import android.os.Build;
-import android.os.Environment;
 import android.util.Log;
 
 import com.example.brightbuds_app.models.Progress;
+import com.example.brightbuds_app.utils.BatchDecryptor;
+import com.example.brightbuds_app.utils.EncryptedFileProvider;
 import com.example.brightbuds_app.utils.EncryptionUtil;
+import com.example.brightbuds_app.utils.StreamingEncryption;
 import com.itextpdf.text.*;
 import com.itextpdf.text.pdf.*;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.List;
@@ -41,7 +43,7 @@ public class PDFReportService {
         File file = createReportFile("BrightBuds_Admin_Report");
         if (file == null) { cb.onFailure(new IOException("Cannot create file")); return; }
 
-        try (FileOutputStream out = new FileOutputStream(file)) {
+        try (OutputStream out = StreamingEncryption.encryptingStream(new FileOutputStream(file))) {
             Document doc = new Document();
             PdfWriter.getInstance(doc, out);
             doc.open();
@@ -66,11 +68,21 @@ public class PDFReportService {
             for (Progress p : list)
                 grouped.computeIfAbsent(p.getChildId(), k -> new ArrayList<>()).add(p);
 
+            List<String> rowChildNames = new ArrayList<>();
+            List<String> rowParentNames = new ArrayList<>();
+            for (var entry : grouped.entrySet()) {
+                rowChildNames.add(childNames.getOrDefault(entry.getKey(), "Child"));
+                rowParentNames.add(parentNames.getOrDefault(entry.getValue().get(0).getParentId(), "Parent"));
+            }
+            rowChildNames = decryptNames(rowChildNames);
+            rowParentNames = decryptNames(rowParentNames);
+
+            int row = 0;
             for (var entry : grouped.entrySet()) {
-                String childId = entry.getKey();
                 List<Progress> pl = entry.getValue();
-                String childName = decryptChildName(childNames.getOrDefault(childId, "Child"));
-                String parentName = decryptParentName(parentNames.getOrDefault(pl.get(0).getParentId(), "Parent"));
+                String childName = rowChildNames.get(row);
+                String parentName = rowParentNames.get(row);
+                row++;
                 double cAvg = pl.stream().mapToDouble(Progress::getScore).average().orElse(0);
                 addDetailedRow(table, childName, parentName, String.valueOf(pl.size()),
                         String.format(Locale.getDefault(), "%.1f%%", cAvg), BaseColor.WHITE, font);
@@ -91,7 +103,7 @@ public class PDFReportService {
         File file = createReportFile("BrightBuds_Family_Report");
         if (file == null) { cb.onFailure(new IOException("Cannot create file")); return; }
 
-        try (FileOutputStream out = new FileOutputStream(file)) {
+        try (OutputStream out = StreamingEncryption.encryptingStream(new FileOutputStream(file))) {
             Document doc = new Document();
             PdfWriter.getInstance(doc, out);
             doc.open();
@@ -117,10 +129,12 @@ public class PDFReportService {
             for (Progress p : list)
                 grouped.computeIfAbsent(p.getChildId(), k -> new ArrayList<>()).add(p);
 
+            Map<String, String> resolvedNames = resolveChildNames(grouped.keySet(), childNames);
+
             for (var entry : grouped.entrySet()) {
                 String childId = entry.getKey();
                 List<Progress> progress = entry.getValue();
-                String child = decryptChildName(childNames.getOrDefault(childId, "Child"));
+                String child = resolvedNames.get(childId);
                 double cAvg = progress.stream().mapToDouble(Progress::getScore).average().orElse(0);
                 addSummaryRow(summary, child, String.valueOf(progress.size()),
                         String.format(Locale.getDefault(), "%.1f%%", cAvg), BaseColor.WHITE, font);
@@ -132,7 +146,7 @@ public class PDFReportService {
 
             for (var child : grouped.entrySet()) {
                 String childId = child.getKey();
-                String cName = decryptChildName(childNames.getOrDefault(childId, "Child"));
+                String cName = resolvedNames.get(childId);
                 doc.add(new Paragraph("Child: " + cName, bold));
 
                 PdfPTable childTable = new PdfPTable(3);
@@ -162,14 +176,25 @@ public class PDFReportService {
         }
     }
 
-    private String decryptChildName(String val) {
-        String dec = EncryptionUtil.decrypt(val);
-        return (dec != null && !dec.isEmpty()) ? dec : val;
+    /** Decrypts all names in one batch; values that are not ciphertext are kept as-is */
+    private List<String> decryptNames(List<String> values) {
+        List<String> decrypted = BatchDecryptor.decryptAll(values);
+        for (int i = 0; i < decrypted.size(); i++) {
+            String dec = decrypted.get(i);
+            if (dec == null || dec.isEmpty()) decrypted.set(i, values.get(i));
+        }
+        return decrypted;
     }
 
-    private String decryptParentName(String val) {
-        String dec = EncryptionUtil.decrypt(val);
-        return (dec != null && !dec.isEmpty()) ? dec : val;
+    private Map<String, String> resolveChildNames(Collection<String> childIds, Map<String, String> childNames) {
+        List<String> ids = new ArrayList<>(childIds);
+        List<String> raw = new ArrayList<>(ids.size());
+        for (String id : ids) raw.add(childNames.getOrDefault(id, "Child"));
+
+        List<String> decrypted = decryptNames(raw);
+        Map<String, String> resolved = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) resolved.put(ids.get(i), decrypted.get(i));
+        return resolved;
     }
 
     private String getModuleName(Progress p) {
@@ -198,13 +223,25 @@ public class PDFReportService {
 
     private File createReportFile(String prefix) {
         String name = prefix + "_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date()) + ".pdf";
-        File dir = (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q)
-                ? new File(context.getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS), "BrightBudsReports")
-                : new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOCUMENTS), "BrightBudsReports");
+        // Reports are encrypted at rest, so they stay in app-private storage on every API level
+        File dir = EncryptedFileProvider.getReportsDir(context);
         if (!dir.exists()) dir.mkdirs();
         return new File(dir, name);
     }
 
+    /** Opens an encrypted report in the user's PDF viewer via EncryptedFileProvider */
+    public void openReport(String filePath) {
+        Uri uri = EncryptedFileProvider.getReportUri(context, new File(filePath));
+        Intent intent = new Intent(Intent.ACTION_VIEW)
+                .setDataAndType(uri, "application/pdf")
+                .addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_ACTIVITY_NEW_TASK);
+        try {
+            context.startActivity(intent);
+        } catch (Exception e) {
+            Log.e(TAG, "No PDF viewer available", e);
+        }
+    }
+
     private void addSummaryRow(PdfPTable t, String a, String b, String c, BaseColor bg, Font f) {
         PdfPCell[] cells = {
                 new PdfPCell(new Phrase(a, f)),
@@ -0,0 +1,272 @@
+package com.example.brightbuds_app.services;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.example.brightbuds_app.models.CounterDelta;
+import com.example.brightbuds_app.models.ModuleRollup;
+import com.example.brightbuds_app.models.Progress;
+import com.example.brightbuds_app.models.ProgressPage;
+import com.example.brightbuds_app.models.SyncItem;
+import com.example.brightbuds_app.utils.Constants;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ProgressDao — Asynchronous access to the local progress cache.
+ *
+ * Every call runs off the calling thread and returns a Task, so it is safe
+ * to use from Firestore listeners and activities. Writes go through a single
+ * writer thread, which keeps them in submission order and matches SQLite's
+ * one-writer model. Reads run on a small pool and, thanks to WAL, never wait
+ * for a writer. A read does not wait for earlier writes either: chain it on
+ * the write's Task when it must see that write.
+ *
+ * Task listeners run on the main thread unless an executor is passed.
+ */
+public class ProgressDao {
+
+    private static final String TAG = "ProgressDao";
+    private static final int READER_THREADS = 2;
+
+    private static final ExecutorService WRITER =
+            Executors.newSingleThreadExecutor(namedDaemon("BrightBudsDb-writer"));
+    private static final ExecutorService READERS =
+            Executors.newFixedThreadPool(READER_THREADS, namedDaemon("BrightBudsDb-reader"));
+
+    private static ProgressDao instance;
+
+    private final DatabaseHelper db;
+
+    public static synchronized ProgressDao getInstance(Context context) {
+        if (instance == null) instance = new ProgressDao(DatabaseHelper.getInstance(context));
+        return instance;
+    }
+
+    @VisibleForTesting
+    ProgressDao(DatabaseHelper db) {
+        this.db = db;
+    }
+
+    // WRITES
+
+    public Task<Void> upsertProgress(String progressId,
+                                     String parentId,
+                                     String childId,
+                                     String moduleId,
+                                     int score,
+                                     String status,
+                                     long timestamp,
+                                     long timeSpent,
+                                     boolean isSynced) {
+        return write(() -> {
+            db.insertOrUpdateProgress(progressId, parentId, childId, moduleId,
+                    score, status, timestamp, timeSpent, isSynced);
+            return null;
+        });
+    }
+
+    public Task<Void> upsertProgressBatch(Collection<Progress> rows, boolean isSynced) {
+        return write(() -> {
+            db.upsertProgressBatch(rows, isSynced);
+            return null;
+        });
+    }
+
+    public Task<Void> markProgressAsSynced(String progressId) {
+        return write(() -> {
+            db.markProgressAsSynced(progressId);
+            return null;
+        });
+    }
+
+    public Task<Integer> markProgressBatchSynced(Collection<Progress> uploaded) {
+        return write(() -> db.markProgressBatchSynced(uploaded));
+    }
+
+    public Task<Integer> recordProgressSyncFailures(Collection<Progress> rejected, int maxAttempts) {
+        return write(() -> db.recordProgressSyncFailures(rejected, maxAttempts));
+    }
+
+    public Task<Boolean> recordQueueSyncFailure(SyncItem item, int maxAttempts) {
+        return write(() -> db.recordQueueSyncFailure(item, maxAttempts));
+    }
+
+    public Task<Void> addCounterDeltas(String progressId, String parentId, String childId,
+                                       String moduleId, Map<String, Long> deltas) {
+        return write(() -> {
+            db.addCounterDeltas(progressId, parentId, childId, moduleId, deltas);
+            return null;
+        });
+    }
+
+    public Task<Boolean> addCounterDeltas(String progressId, String parentId, String childId,
+                                          String moduleId, Map<String, Long> deltas,
+                                          String replayScope, long replayMark) {
+        return write(() -> db.addCounterDeltas(progressId, parentId, childId, moduleId,
+                deltas, replayScope, replayMark));
+    }
+
+    public Task<Void> ackCounters(Collection<CounterDelta> sent) {
+        return write(() -> {
+            db.ackCounters(sent);
+            return null;
+        });
+    }
+
+    public Task<Void> markAsSynced(String tableName, String recordId) {
+        return write(() -> {
+            db.markAsSynced(tableName, recordId);
+            return null;
+        });
+    }
+
+    public Task<Void> addToSyncQueue(String tableName, String recordId, String operation) {
+        return write(() -> {
+            db.addToSyncQueue(tableName, recordId, operation);
+            return null;
+        });
+    }
+
+    /** Writes only new or changed server rows; resolves to exactly those rows */
+    public Task<List<Progress>> mergeProgressDelta(Collection<String> childIds,
+                                                   List<Progress> serverRows,
+                                                   String scope,
+                                                   long newWatermark) {
+        return write(() -> db.mergeProgressDelta(childIds, serverRows, scope, newWatermark));
+    }
+
+    public Task<List<Progress>> upsertChangedProgress(Collection<String> childIds, List<Progress> serverRows) {
+        return write(() -> db.upsertChangedProgress(childIds, serverRows));
+    }
+
+    /** Applies the offline retention window; runs between other writes, never alongside them */
+    Task<DatabaseCompaction.Result> compact(long retentionDays) {
+        long cutoff = System.currentTimeMillis() - retentionDays * Constants.ONE_DAY_MS;
+        return write(() -> db.compact(cutoff));
+    }
+
+    /** Merges rows of the same child and module into their canonical id */
+    public Task<Integer> collapseDuplicateProgress() {
+        return write(() -> db.collapseDuplicateProgress());
+    }
+
+    /** Marks a replayed entry done unless it was coalesced again meanwhile */
+    public Task<Boolean> completeQueueItem(SyncItem item) {
+        return write(() -> db.completeQueueItem(item));
+    }
+
+    // READS
+
+    public Task<List<Progress>> getProgressForChildren(Collection<String> childIds) {
+        return read(() -> db.getProgressForChildren(childIds));
+    }
+
+    public Task<List<Progress>> getUnsyncedProgressDetails() {
+        return read(db::getUnsyncedProgressDetails);
+    }
+
+    public Task<Long> countUnsynced() {
+        return read(db::countUnsynced);
+    }
+
+    /** Waits for queued writes so a just-merged delta's watermark is visible */
+    public Task<Long> getWatermark(String scope) {
+        return readAfterPendingWrites(() -> db.getWatermark(scope));
+    }
+
+    /** Stored marks for several scopes; scopes never written map to 0 */
+    public Task<Map<String, Long>> getWatermarks(Collection<String> scopes) {
+        return readAfterPendingWrites(() -> {
+            Map<String, Long> marks = new HashMap<>();
+            for (String scope : scopes) marks.put(scope, db.getWatermark(scope));
+            return marks;
+        });
+    }
+
+    /** Waits for queued writes so counters recorded just before are included */
+    public Task<List<CounterDelta>> getPendingCounters() {
+        return readAfterPendingWrites(db::getPendingCounters);
+    }
+
+    public Task<Long> countQuarantinedProgress() {
+        return read(db::countQuarantinedProgress);
+    }
+
+    public Task<List<SyncItem>> getSyncQueue() {
+        return read(db::getSyncQueue);
+    }
+
+    public Task<Long> countPendingSyncQueue() {
+        return read(db::countPendingSyncQueue);
+    }
+
+    public Task<List<Progress>> getProgressPage(String childId, ProgressPage.Key after, int limit) {
+        return read(() -> db.getProgressPage(childId, after, limit));
+    }
+
+    /** Waits for writes already queued, so rows cached just before are included */
+    public Task<List<ModuleRollup>> getModuleRollups(Collection<String> childIds) {
+        return readAfterPendingWrites(() -> db.getModuleRollups(childIds));
+    }
+
+    // EXECUTION
+
+    /** Runs arbitrary work on the writer thread, ordered after every earlier write */
+    public <T> Task<T> write(Callable<T> work) {
+        return submit(WRITER, work);
+    }
+
+    /** Runs arbitrary read-only work on the reader pool */
+    public <T> Task<T> read(Callable<T> work) {
+        return submit(READERS, work);
+    }
+
+    /**
+     * Runs read-only work on the reader pool once every write submitted
+     * before this call has finished. The writer thread only hands the work
+     * over; the read itself never holds it up.
+     */
+    public <T> Task<T> readAfterPendingWrites(Callable<T> work) {
+        TaskCompletionSource<T> source = new TaskCompletionSource<>();
+        WRITER.execute(() -> READERS.execute(() -> run(work, source)));
+        return source.getTask();
+    }
+
+    private static <T> Task<T> submit(Executor executor, Callable<T> work) {
+        TaskCompletionSource<T> source = new TaskCompletionSource<>();
+        executor.execute(() -> run(work, source));
+        return source.getTask();
+    }
+
+    private static <T> void run(Callable<T> work, TaskCompletionSource<T> source) {
+        try {
+            source.setResult(work.call());
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Local database operation failed", e);
+            source.setException(e);
+        }
+    }
+
+    private static ThreadFactory namedDaemon(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
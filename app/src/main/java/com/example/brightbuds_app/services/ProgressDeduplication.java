@@ -0,0 +1,161 @@
+package com.example.brightbuds_app.services;
+
+import android.util.Log;
+
+import com.example.brightbuds_app.models.Progress;
+import com.example.brightbuds_app.utils.Constants;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ProgressDeduplication — One-time merge of a parent's duplicate
+ * child_progress documents into {@link Progress#canonicalId}.
+ *
+ * Older builds wrote the same (child, module) under auto-ids and
+ * "offline_&lt;millis&gt;" ids. For each such group the canonical document
+ * takes the newest document's fields and the best score; the duplicates'
+ * plays and timeSpent are added with FieldValue.increment so counters
+ * pushed concurrently by CounterSync are kept. Each merge and the deletes
+ * of its duplicates share one WriteBatch, so a rerun after a partial
+ * failure never counts a duplicate twice.
+ *
+ * Local rows are collapsed the same way afterwards. Legacy rows re-pulled
+ * before the merge are dropped there, not added again; the merged
+ * canonical document carries a fresh lastUpdated, so the next delta pull
+ * brings its totals in.
+ */
+final class ProgressDeduplication {
+
+    private static final String TAG = "ProgressDedup";
+
+    private ProgressDeduplication() { }
+
+    /** The task's result is the number of duplicate documents removed */
+    static Task<Integer> run(FirebaseFirestore firestore, ProgressDao localDb, String parentId) {
+        return firestore.collection("child_progress")
+                .whereEqualTo("parentId", parentId)
+                .get()
+                .onSuccessTask(snapshot -> commitMerges(firestore, groupByCanonicalId(snapshot)))
+                .onSuccessTask(removed -> localDb.collapseDuplicateProgress()
+                        .onSuccessTask(local -> Tasks.forResult(removed)));
+    }
+
+    private static Map<String, List<DocumentSnapshot>> groupByCanonicalId(QuerySnapshot snapshot) {
+        Map<String, List<DocumentSnapshot>> groups = new LinkedHashMap<>();
+        for (DocumentSnapshot doc : snapshot) {
+            String childId = doc.getString("childId");
+            String moduleId = doc.getString("moduleId");
+            if (childId == null || moduleId == null) continue;
+
+            String id = Progress.canonicalId(childId, moduleId);
+            List<DocumentSnapshot> group = groups.get(id);
+            if (group == null) groups.put(id, group = new ArrayList<>());
+            group.add(doc);
+        }
+        return groups;
+    }
+
+    private static Task<Integer> commitMerges(FirebaseFirestore firestore,
+                                              Map<String, List<DocumentSnapshot>> groups) {
+        List<Task<Void>> commits = new ArrayList<>();
+        WriteBatch batch = firestore.batch();
+        int opsInBatch = 0;
+        int removed = 0;
+
+        for (Map.Entry<String, List<DocumentSnapshot>> group : groups.entrySet()) {
+            List<DocumentSnapshot> duplicates = new ArrayList<>();
+            for (DocumentSnapshot doc : group.getValue()) {
+                if (!doc.getId().equals(group.getKey())) duplicates.add(doc);
+            }
+            if (duplicates.isEmpty()) continue;
+
+            Map<String, Object> base = mergedFields(group.getValue());
+            DocumentReference target = firestore.collection("child_progress").document(group.getKey());
+
+            // A merge and its deletes must land in the same batch
+            int chunkSize = Constants.FIRESTORE_BATCH_LIMIT - 1;
+            for (int from = 0; from < duplicates.size(); from += chunkSize) {
+                List<DocumentSnapshot> chunk =
+                        duplicates.subList(from, Math.min(from + chunkSize, duplicates.size()));
+                if (opsInBatch + chunk.size() + 1 > Constants.FIRESTORE_BATCH_LIMIT) {
+                    commits.add(batch.commit());
+                    batch = firestore.batch();
+                    opsInBatch = 0;
+                }
+
+                long plays = 0L;
+                long timeSpent = 0L;
+                for (DocumentSnapshot doc : chunk) {
+                    plays += longField(doc, "plays", 1L); // legacy docs were one play each
+                    timeSpent += longField(doc, "timeSpent", 0L);
+                    batch.delete(doc.getReference());
+                }
+
+                Map<String, Object> data = new HashMap<>(base);
+                data.put("plays", FieldValue.increment(plays));
+                data.put("timeSpent", FieldValue.increment(timeSpent));
+                batch.set(target, data, SetOptions.merge());
+
+                opsInBatch += chunk.size() + 1;
+                removed += chunk.size();
+            }
+        }
+        if (opsInBatch > 0) commits.add(batch.commit());
+
+        final int total = removed;
+        return Tasks.whenAll(commits).continueWith(task -> {
+            if (!task.isSuccessful()) {
+                Log.w(TAG, "⚠️ Deduplication incomplete; committed merges are kept", task.getException());
+                throw task.getException();
+            }
+            Log.i(TAG, "✅ Merged " + total + " duplicate progress docs");
+            return total;
+        });
+    }
+
+    /** Newest document's fields with the group's best score and completion */
+    private static Map<String, Object> mergedFields(List<DocumentSnapshot> group) {
+        DocumentSnapshot newest = group.get(0);
+        double bestScore = 0;
+        boolean completed = false;
+        for (DocumentSnapshot doc : group) {
+            if (longField(doc, "timestamp", 0L) > longField(newest, "timestamp", 0L)) newest = doc;
+            Progress p = doc.toObject(Progress.class);
+            if (p == null) continue;
+            bestScore = Math.max(bestScore, p.getScore());
+            completed |= p.isModuleCompleted();
+        }
+
+        Map<String, Object> data = newest.getData() != null
+                ? new HashMap<>(newest.getData()) : new HashMap<>();
+        // Counters belong to CounterSync; only increments may touch them
+        data.remove("plays");
+        data.remove("timeSpent");
+        data.remove("counters");
+        data.remove("progressId");
+
+        data.put("score", (long) bestScore);
+        data.put("completionStatus", completed);
+        if (completed) data.put("status", "completed");
+        data.put("lastUpdated", System.currentTimeMillis());
+        return data;
+    }
+
+    private static long longField(DocumentSnapshot doc, String field, long fallback) {
+        Object value = doc.get(field);
+        return value instanceof Number ? ((Number) value).longValue() : fallback;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.brightbuds_app.services;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.util.Log;
+
+import com.example.brightbuds_app.utils.ConfigManager;
+import com.example.brightbuds_app.utils.Constants;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+/**
+ * ProgressDeduplicationJobService
+ * One-shot job that runs {@link ProgressDeduplication} for the signed-in
+ * parent when a network is available. Once it succeeds the parent is
+ * flagged in ConfigManager and the job is never scheduled for them again;
+ * a failed run is retried with JobScheduler's default backoff. It is
+ * scheduled at app start and again after each login, since a run with
+ * nobody signed in ends without rescheduling.
+ */
+public class ProgressDeduplicationJobService extends JobService {
+
+    private static final String TAG = "ProgressDedupJob";
+
+    /** Schedules the merge unless it already ran for the signed-in parent or is pending */
+    public static void schedule(Context context) {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user != null && ConfigManager.getInstance(context).isProgressDeduplicated(user.getUid())) return;
+
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) return;
+
+        for (JobInfo pending : scheduler.getAllPendingJobs()) {
+            if (pending.getId() == Constants.JOB_ID_PROGRESS_DEDUP) return;
+        }
+
+        JobInfo job = new JobInfo.Builder(Constants.JOB_ID_PROGRESS_DEDUP,
+                new ComponentName(context, ProgressDeduplicationJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .setPersisted(true)
+                .build();
+
+        int result = scheduler.schedule(job);
+        Log.i(TAG, result == JobScheduler.RESULT_SUCCESS
+                ? "✅ Progress deduplication scheduled"
+                : "❌ Failed to schedule progress deduplication");
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            Log.d(TAG, "No signed-in parent; LoginActivity schedules again");
+            return false;
+        }
+
+        String parentId = user.getUid();
+        ConfigManager config = ConfigManager.getInstance(this);
+        if (config.isProgressDeduplicated(parentId)) return false;
+
+        ProgressDeduplication.run(FirebaseFirestore.getInstance(), ProgressDao.getInstance(this), parentId)
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful()) {
+                        config.setProgressDeduplicated(parentId);
+                        Log.i(TAG, "✅ Removed " + task.getResult() + " duplicate progress docs");
+                        jobFinished(params, false);
+                    } else {
+                        Log.e(TAG, "❌ Progress deduplication failed", task.getException());
+                        jobFinished(params, true);
+                    }
+                });
+        return true; // finishing asynchronously
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // Each merge commits atomically with its deletes; rerunning is safe
+        return true;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.brightbuds_app.services;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ProgressDocWrites — Writes to canonical child_progress documents.
+ *
+ * A canonical document's score is the best score ever reached and its
+ * completion is sticky, which is what the local row and the module rollups
+ * assume. Firestore has no max() transform, so every write reads the
+ * document in a transaction and merges with {@link #keepBest}. Transactions
+ * need a connection; callers fall back to caching the row offline, and the
+ * background drain uploads it through the same rule.
+ */
+final class ProgressDocWrites {
+
+    static final String COLLECTION = "child_progress";
+    private static final String STATUS_COMPLETED = "completed";
+
+    private ProgressDocWrites() { }
+
+    /** Writes one document; see {@link #setKeepingBest(FirebaseFirestore, Map)} */
+    static Task<Void> setKeepingBest(FirebaseFirestore firestore, String docId, Map<String, Object> data) {
+        Map<String, Map<String, Object>> single = new HashMap<>();
+        single.put(docId, data);
+        return setKeepingBest(firestore, single);
+    }
+
+    /**
+     * Merges each document's fields in one transaction: the best of the
+     * stored and new score wins and a completed document stays completed.
+     * Fields not in the map are left alone.
+     */
+    static Task<Void> setKeepingBest(FirebaseFirestore firestore, Map<String, Map<String, Object>> dataById) {
+        return firestore.runTransaction(transaction -> {
+            // All reads must come before the first write
+            Map<DocumentReference, Map<String, Object>> merged = new LinkedHashMap<>();
+            for (Map.Entry<String, Map<String, Object>> entry : dataById.entrySet()) {
+                DocumentReference ref = firestore.collection(COLLECTION).document(entry.getKey());
+                DocumentSnapshot stored = transaction.get(ref);
+                merged.put(ref, keepBest(stored.getData(), entry.getValue()));
+            }
+            for (Map.Entry<DocumentReference, Map<String, Object>> entry : merged.entrySet()) {
+                transaction.set(entry.getKey(), entry.getValue(), SetOptions.merge());
+            }
+            return null;
+        });
+    }
+
+    /** Incoming fields, with score, status and completionStatus never going backwards */
+    static Map<String, Object> keepBest(Map<String, Object> stored, Map<String, Object> incoming) {
+        Map<String, Object> data = new HashMap<>(incoming);
+        if (stored == null) return data;
+
+        Object storedScore = stored.get("score");
+        Object newScore = incoming.get("score");
+        if (storedScore instanceof Number && newScore instanceof Number
+                && ((Number) storedScore).doubleValue() > ((Number) newScore).doubleValue()) {
+            data.put("score", storedScore);
+        }
+        if (STATUS_COMPLETED.equals(stored.get("status")) && incoming.containsKey("status")) {
+            data.put("status", STATUS_COMPLETED);
+        }
+        if (Boolean.TRUE.equals(stored.get("completionStatus")) && incoming.containsKey("completionStatus")) {
+            data.put("completionStatus", true);
+        }
+        return data;
+    }
+}
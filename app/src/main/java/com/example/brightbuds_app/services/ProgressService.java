@@ -3,15 +3,23 @@ package com.example.brightbuds_app.services;
 import android.content.Context;
 import android.util.Log;
 
+import com.example.brightbuds_app.interfaces.CachedProgressCallback;
 import com.example.brightbuds_app.interfaces.DataCallbacks;
 import com.example.brightbuds_app.interfaces.ProgressListCallback;
+import com.example.brightbuds_app.interfaces.ProgressPageCallback;
+import com.example.brightbuds_app.models.ModuleRollup;
 import com.example.brightbuds_app.models.Progress;
+import com.example.brightbuds_app.models.ProgressPage;
+import com.example.brightbuds_app.utils.Constants;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FieldPath;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
-import com.google.firebase.firestore.SetOptions;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -25,12 +33,16 @@ public class ProgressService {
     private static final String TAG = "ProgressService";
     private static final int TOTAL_MODULES = 7;
 
+    private final Context appContext;
     private final FirebaseFirestore db;
-    private final DatabaseHelper localDb;
+    private final ProgressDao localDb;
+    private final CounterSync counterSync;
 
     public ProgressService(Context context) {
+        this.appContext = context.getApplicationContext();
         this.db = FirebaseFirestore.getInstance();
-        this.localDb = new DatabaseHelper(context);
+        this.localDb = ProgressDao.getInstance(context);
+        this.counterSync = new CounterSync(context);
     }
 
 
@@ -48,22 +60,15 @@ public class ProgressService {
                 .whereEqualTo("parentId", parentId)
                 .get()
                 .addOnSuccessListener(snapshot -> {
-                    List<Progress> result = new ArrayList<>();
                     Set<String> foundChildIds = new HashSet<>();
-
-                    for (DocumentSnapshot doc : snapshot) {
-                        Progress p = doc.toObject(Progress.class);
-                        if (p != null) {
-                            p.setProgressId(doc.getId());
-                            result.add(p);
-                            foundChildIds.add(p.getChildId());
-                            // from server → mark as synced locally
-                            cacheProgressLocally(p, true);
-                        }
-                    }
+                    List<Progress> result = toProgressList(snapshot, foundChildIds);
 
                     validateChildProgressConsistency(childIds, foundChildIds);
-                    callback.onSuccess(result);
+
+                    // from server → cache as synced, leaving rows with pending offline edits alone.
+                    // Delivered once cached, so callers may modify the rows freely.
+                    localDb.upsertChangedProgress(childIds, result)
+                            .addOnCompleteListener(cached -> callback.onSuccess(result));
                 })
                 .addOnFailureListener(e -> {
                     Log.e(TAG, "❌ Firestore fetch failed", e);
@@ -71,6 +76,199 @@ public class ProgressService {
                 });
     }
 
+    /**
+     * Local-first variant of {@link #getAllProgressForParentWithChildren}.
+     * Delivers the cached rows immediately, then pulls only what changed in
+     * Firestore since the last refresh and delivers the rows that differ.
+     * Unchanged rows are not rewritten to the cache.
+     */
+    public void getProgressForParentCachedFirst(String parentId,
+                                                List<String> childIds,
+                                                CachedProgressCallback callback) {
+        if (childIds == null || childIds.isEmpty()) {
+            Log.w(TAG, "⚠️ No child IDs for parent: " + parentId);
+            callback.onCached(new ArrayList<>());
+            callback.onRevalidated(new ArrayList<>());
+            return;
+        }
+
+        Task<List<Progress>> cached = localDb.getProgressForChildren(childIds)
+                .addOnSuccessListener(rows -> {
+                    Log.d(TAG, "⚡ Served " + rows.size() + " cached progress rows");
+                    callback.onCached(rows);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "❌ Cached progress read failed", e);
+                    callback.onCached(new ArrayList<>());
+                });
+
+        // Revalidate in parallel; results are held back until onCached has run
+        final String scope = watermarkScope(parentId);
+        localDb.getWatermark(scope)
+                .addOnSuccessListener(watermark -> pullProgressDelta(parentId, childIds, scope, watermark, cached, callback))
+                .addOnFailureListener(e -> pullProgressDelta(parentId, childIds, scope, 0L, cached, callback));
+    }
+
+    /**
+     * Fetches only documents whose lastUpdated is past the parent's stored
+     * high-watermark (less a clock-skew overlap), merges them into the cache
+     * and advances the watermark in the same local transaction. The first
+     * pull for a parent (watermark 0) reads everything. Requires the
+     * composite index parentId ASC, lastUpdated ASC (see firestore.indexes.json).
+     */
+    private void pullProgressDelta(String parentId,
+                                   List<String> childIds,
+                                   String scope,
+                                   long watermark,
+                                   Task<List<Progress>> cached,
+                                   CachedProgressCallback callback) {
+        final long pullStartedAt = System.currentTimeMillis();
+        Query query = db.collection("child_progress").whereEqualTo("parentId", parentId);
+        if (watermark > 0) {
+            query = query.whereGreaterThan("lastUpdated",
+                    Math.max(0L, watermark - Constants.PROGRESS_DELTA_OVERLAP_MS));
+        }
+
+        query.get()
+                .addOnSuccessListener(snapshot -> {
+                    Set<String> foundChildIds = new HashSet<>();
+                    List<Progress> server = toProgressList(snapshot, foundChildIds);
+                    if (watermark == 0) validateChildProgressConsistency(childIds, foundChildIds);
+
+                    // Full pulls may include documents that predate lastUpdated
+                    long next = watermark == 0 ? pullStartedAt : watermark;
+                    for (Progress p : server) next = Math.max(next, lastUpdatedMillis(p));
+
+                    Task<List<Progress>> reconcile = localDb.mergeProgressDelta(childIds, server, scope, next);
+                    Tasks.whenAllComplete(cached, reconcile).addOnCompleteListener(done -> {
+                        if (reconcile.isSuccessful()) {
+                            List<Progress> changed = reconcile.getResult();
+                            Log.i(TAG, "🔄 Revalidated progress: " + changed.size() + " of "
+                                    + server.size() + (watermark == 0 ? " rows" : " delta rows") + " changed");
+                            callback.onRevalidated(changed);
+                        } else {
+                            callback.onFailure(reconcile.getException());
+                        }
+                    });
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "❌ Progress revalidation failed; keeping cached rows", e);
+                    Tasks.whenAllComplete(cached).addOnCompleteListener(done -> callback.onFailure(e));
+                });
+    }
+
+    private static String watermarkScope(String parentId) {
+        return "child_progress:" + parentId;
+    }
+
+    /** lastUpdated is written as epoch millis; older documents may hold a Timestamp */
+    private static long lastUpdatedMillis(Progress p) {
+        Object value = p.getLastUpdated();
+        if (value instanceof Number) return ((Number) value).longValue();
+        if (value instanceof Timestamp) return ((Timestamp) value).toDate().getTime();
+        return 0L;
+    }
+
+    // MODULE ROLLUPS
+
+    /**
+     * Per-(child, module) aggregates from the local rollup table: at most one
+     * row per module instead of the child's full history. Includes any rows
+     * cached by calls made before this one.
+     */
+    public void getModuleRollups(List<String> childIds,
+                                 DataCallbacks.GenericListCallback<ModuleRollup> callback) {
+        localDb.getModuleRollups(childIds)
+                .addOnSuccessListener(callback::onSuccess)
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "❌ Failed to read module rollups", e);
+                    callback.onFailure(e);
+                });
+    }
+
+    // PAGINATED HISTORY
+
+    /**
+     * Reads one page of a child's progress history from Firestore, newest
+     * first, ordered on (timestamp, document id) and continued with
+     * startAfter. Requires the composite index
+     * childId ASC, timestamp DESC, __name__ DESC (see firestore.indexes.json).
+     *
+     * @param after    null for the first page, otherwise the previous page's next key
+     * @param pageSize rows per page; clamped to [1, PROGRESS_PAGE_SIZE_MAX]
+     */
+    public void getChildProgressPage(String childId,
+                                     ProgressPage.Key after,
+                                     int pageSize,
+                                     ProgressPageCallback callback) {
+        fetchProgressPage("childId", childId, after, pageSize, callback);
+    }
+
+    /**
+     * Same as {@link #getChildProgressPage} across all of a parent's children;
+     * uses the index parentId ASC, timestamp DESC, __name__ DESC.
+     */
+    public void getParentProgressPage(String parentId,
+                                      ProgressPage.Key after,
+                                      int pageSize,
+                                      ProgressPageCallback callback) {
+        fetchProgressPage("parentId", parentId, after, pageSize, callback);
+    }
+
+    /** Reads one page of a child's history from the local cache only; no network */
+    public void getLocalChildProgressPage(String childId,
+                                          ProgressPage.Key after,
+                                          int pageSize,
+                                          ProgressPageCallback callback) {
+        final int limit = clampPageSize(pageSize);
+        localDb.getProgressPage(childId, after, limit)
+                .addOnSuccessListener(rows -> callback.onSuccess(new ProgressPage(rows, limit)))
+                .addOnFailureListener(callback::onFailure);
+    }
+
+    private void fetchProgressPage(String ownerField,
+                                   String ownerId,
+                                   ProgressPage.Key after,
+                                   int pageSize,
+                                   ProgressPageCallback callback) {
+        if (ownerId == null) {
+            callback.onFailure(new IllegalArgumentException("Missing " + ownerField));
+            return;
+        }
+
+        final int limit = clampPageSize(pageSize);
+        Query query = db.collection("child_progress")
+                .whereEqualTo(ownerField, ownerId)
+                .orderBy("timestamp", Query.Direction.DESCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING)
+                .limit(limit);
+        if (after != null) {
+            query = query.startAfter(after.getTimestamp(), after.getProgressId());
+        }
+
+        query.get()
+                .addOnSuccessListener(snapshot -> {
+                    Set<String> pageChildIds = new HashSet<>();
+                    List<Progress> items = toProgressList(snapshot, pageChildIds);
+
+                    pageChildIds.remove(null);
+                    Log.d(TAG, "📄 Progress page " + ownerField + "=" + ownerId + " rows=" + items.size());
+
+                    // Never overwrites rows whose offline edits are still waiting to upload
+                    localDb.upsertChangedProgress(pageChildIds, items)
+                            .addOnCompleteListener(cached -> callback.onSuccess(new ProgressPage(items, limit)));
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "❌ Progress page fetch failed", e);
+                    callback.onFailure(e);
+                });
+    }
+
+    private static int clampPageSize(int pageSize) {
+        if (pageSize <= 0) return Constants.PROGRESS_PAGE_SIZE;
+        return Math.min(pageSize, Constants.PROGRESS_PAGE_SIZE_MAX);
+    }
+
     // MODULE COMPLETED
 
     public void markModuleCompleted(String childId,
@@ -88,13 +286,13 @@ public class ProgressService {
         }
 
         final String parentId = user.getUid();
+        final String docId = Progress.canonicalId(childId, moduleId);
         Map<String, Object> data = createProgressData(parentId, childId, moduleId, score);
 
-        db.collection("child_progress")
-                .add(data)
-                .addOnSuccessListener(docRef -> {
-                    Log.i(TAG, "✅ Progress saved online: " + docRef.getId());
-                    cacheProgressRecord(docRef.getId(), parentId, childId, moduleId,
+        ProgressDocWrites.setKeepingBest(db, docId, data)
+                .addOnSuccessListener(unused -> {
+                    Log.i(TAG, "✅ Progress saved online: " + docId);
+                    cacheProgressRecord(docId, parentId, childId, moduleId,
                             score, "completed", true);
                     updateChildProgressStats(childId);
                     callback.onSuccess("Progress saved!");
@@ -122,7 +320,7 @@ public class ProgressService {
         }
 
         final String parentId = user.getUid();
-        final String docId = childId + "_" + moduleId;
+        final String docId = Progress.canonicalId(childId, moduleId);
 
         Map<String, Object> data = new HashMap<>();
         data.put("parentId", parentId);
@@ -134,12 +332,13 @@ public class ProgressService {
         data.put("timestamp", System.currentTimeMillis());
         data.put("lastUpdated", System.currentTimeMillis());
         data.put("score", 100);
-        data.put("plays", FieldValue.increment(1));
 
-        db.collection("child_progress")
-                .document(docId)
-                .set(data, SetOptions.merge())
+        // The play itself is a counter contribution, so an offline play is never lost
+        recordCounters(docId, parentId, childId, moduleId, 1, 0L, 0L);
+
+        ProgressDocWrites.setKeepingBest(db, docId, data)
                 .addOnSuccessListener(unused -> {
+                    counterSync.flush();
                     Log.i(TAG, "✅ Video play logged online: " + docId);
                     cacheProgressRecord(docId, parentId, childId, moduleId,
                             100, "video_played", true);
@@ -155,25 +354,40 @@ public class ProgressService {
     }
 
     // SET COMPLETION %
+    /** Upserts the canonical record directly; no lookup query needed to find it */
     public void setCompletionPercentage(String parentId,
                                         String childId,
                                         String moduleId,
                                         int percentage,
                                         DataCallbacks.GenericCallback callback) {
 
-        db.collection("child_progress")
-                .whereEqualTo("parentId", parentId)
-                .whereEqualTo("childId", childId)
-                .whereEqualTo("moduleId", moduleId)
-                .get()
-                .addOnSuccessListener(snapshot -> {
-                    if (!snapshot.isEmpty()) {
-                        updateExistingProgress(snapshot, percentage, callback);
-                    } else {
-                        markModuleCompleted(childId, moduleId, percentage, callback);
-                    }
+        final String docId = Progress.canonicalId(childId, moduleId);
+        final String status = percentage >= 100 ? "completed" : "in_progress";
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("parentId", parentId);
+        data.put("childId", childId);
+        data.put("moduleId", moduleId);
+        data.put("score", percentage);
+        data.put("status", status);
+        data.put("completionStatus", percentage >= 70);
+        data.put("timestamp", System.currentTimeMillis());
+        data.put("lastUpdated", System.currentTimeMillis());
+
+        ProgressDocWrites.setKeepingBest(db, docId, data)
+                .addOnSuccessListener(unused -> {
+                    Log.i(TAG, "✅ Updated progress online: " + docId);
+                    cacheProgressRecord(docId, parentId, childId, moduleId,
+                            percentage, status, true);
+                    updateChildProgressStats(childId);
+                    callback.onSuccess("Progress updated!");
                 })
-                .addOnFailureListener(callback::onFailure);
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "❌ Failed to update online, caching", e);
+                    cacheProgressRecord(docId, parentId, childId, moduleId,
+                            percentage, status, false);
+                    callback.onFailure(e);
+                });
     }
 
     // INTERNAL HELPERS
@@ -189,23 +403,28 @@ public class ProgressService {
         m.put("status", "completed");
         m.put("completionStatus", score >= 70);
         m.put("timestamp", System.currentTimeMillis());
-        m.put("timeSpent", 0L);
-        m.put("plays", 1);
+        m.put("lastUpdated", System.currentTimeMillis());
+        // plays/timeSpent are counters owned by CounterSync; a merge must not reset them
         return m;
     }
 
-    private void cacheProgressLocally(Progress p, boolean isSynced) {
-        localDb.insertOrUpdateProgress(
-                p.getProgressId(),
-                p.getParentId(),
-                p.getChildId(),
-                p.getModuleId(),
-                (int) p.getScore(),
-                p.getStatus(),
-                p.getTimestamp(),
-                p.getTimeSpent(),
-                isSynced
-        );
+    /**
+     * Adds this device's plays/timeSpent contribution; CounterSync pushes it
+     * as increments and the cached row picks it up in the same transaction.
+     * A journalTimestamp &gt; 0 marks a journal replay, applied at most once
+     * per event.
+     */
+    private void recordCounters(String docId, String parentId, String childId, String moduleId,
+                                int playsDelta, long timeSpentDeltaMs, long journalTimestamp) {
+        Map<String, Long> deltas = new HashMap<>();
+        deltas.put("plays", (long) Math.max(0, playsDelta));
+        deltas.put("timeSpent", Math.max(0L, timeSpentDeltaMs));
+        if (journalTimestamp > 0) {
+            localDb.addCounterDeltas(docId, parentId, childId, moduleId, deltas,
+                    GameEventJournal.replayScope(docId), journalTimestamp);
+        } else {
+            localDb.addCounterDeltas(docId, parentId, childId, moduleId, deltas);
+        }
     }
 
     private void cacheProgressRecord(String id,
@@ -215,7 +434,8 @@ public class ProgressService {
                                      int score,
                                      String status,
                                      boolean isSynced) {
-        localDb.insertOrUpdateProgress(
+        // In-place update: keeps the row's plays/timeSpent and its best score
+        localDb.upsertProgress(
                 id,
                 parentId,
                 childId,
@@ -226,6 +446,8 @@ public class ProgressService {
                 0L,
                 isSynced
         );
+        // Offline row: upload it as soon as a network is available
+        if (!isSynced) SyncJobService.requestSync(appContext);
     }
 
     private void handleProgressSaveFailure(Exception e,
@@ -236,12 +458,26 @@ public class ProgressService {
                                            DataCallbacks.GenericCallback callback) {
 
         Log.e(TAG, "❌ Firestore unavailable, caching offline", e);
-        String localId = "offline_" + System.currentTimeMillis();
+        // Same id the online write would have used, so the upload is an upsert
+        String localId = Progress.canonicalId(childId, moduleId);
         cacheProgressRecord(localId, parentId, childId, moduleId,
                 score, "completed", false);
         callback.onSuccess("Saved locally (offline mode)");
     }
 
+    private static List<Progress> toProgressList(QuerySnapshot snapshot, Set<String> foundChildIds) {
+        List<Progress> result = new ArrayList<>(snapshot.size());
+        for (DocumentSnapshot doc : snapshot) {
+            Progress p = doc.toObject(Progress.class);
+            if (p != null) {
+                p.setProgressId(doc.getId());
+                result.add(p);
+                foundChildIds.add(p.getChildId());
+            }
+        }
+        return result;
+    }
+
     private void validateChildProgressConsistency(List<String> expected, Set<String> found) {
         for (String id : expected) {
             if (!found.contains(id)) {
@@ -250,44 +486,6 @@ public class ProgressService {
         }
     }
 
-    private void updateExistingProgress(QuerySnapshot snapshot,
-                                        int percentage,
-                                        DataCallbacks.GenericCallback callback) {
-
-        DocumentSnapshot doc = snapshot.getDocuments().get(0);
-        String docId = doc.getId();
-        String childId = doc.getString("childId");
-        String parentId = doc.getString("parentId");
-        String moduleId = doc.getString("moduleId");
-
-        String status = percentage >= 100 ? "completed" : "in_progress";
-
-        db.collection("child_progress").document(docId)
-                .update(
-                        "score", percentage,
-                        "status", status,
-                        "completionStatus", percentage >= 70,
-                        "timestamp", System.currentTimeMillis()
-                )
-                .addOnSuccessListener(unused -> {
-                    Log.i(TAG, "✅ Updated progress online: " + docId);
-                    if (childId != null && parentId != null && moduleId != null) {
-                        cacheProgressRecord(docId, parentId, childId, moduleId,
-                                percentage, status, true);
-                        updateChildProgressStats(childId);
-                    }
-                    callback.onSuccess("Progress updated!");
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "❌ Failed to update online, caching", e);
-                    if (childId != null && parentId != null && moduleId != null) {
-                        cacheProgressRecord(docId, parentId, childId, moduleId,
-                                percentage, status, false);
-                    }
-                    callback.onFailure(e);
-                });
-    }
-
     /** Recalculate child-level progress & stars from child_progress */
     private void updateChildProgressStats(String childId) {
         db.collection("child_progress")
@@ -343,7 +541,9 @@ public class ProgressService {
         Log.d(TAG, "⚠️ Deprecated logVideoPlay() called with no parameters.");
     }
 
+    /** Asks the background sync job to flush offline rows as soon as a network is available */
     public void autoSyncOfflineProgress() {
+        SyncJobService.requestSync(appContext);
     }
 
     /*
@@ -353,19 +553,36 @@ public class ProgressService {
 
  Fields saved online:
    parentId, childId, moduleId, type="game", score, status, completionStatus,
-   timestamp, timeSpent, plays, correct, incorrect, stars, lastUpdated
+   timestamp, correct, incorrect, stars, lastUpdated
 
- Local cache uses DatabaseHelper.insertOrUpdateProgress to store a minimal row with timeSpent.
+ timeSpentDeltaMs and playsDelta are what this call adds, not totals. They are
+ recorded as this device's counter contributions and pushed by CounterSync
+ as increments, so devices and offline replays never overwrite each other.
 */
     public void recordGameSession(String childId,
                                   String moduleId,
                                   int score,
-                                  long timeSpentMs,
+                                  long timeSpentDeltaMs,
                                   int stars,
                                   int correct,
                                   int incorrect,
-                                  int plays,
+                                  int playsDelta,
                                   DataCallbacks.GenericCallback callback) {
+        recordGameSession(childId, moduleId, score, timeSpentDeltaMs, stars, correct, incorrect,
+                playsDelta, 0L, callback);
+    }
+
+    /** Journal replay: journalTimestamp is the session's newest replayed event */
+    void recordGameSession(String childId,
+                           String moduleId,
+                           int score,
+                           long timeSpentDeltaMs,
+                           int stars,
+                           int correct,
+                           int incorrect,
+                           int playsDelta,
+                           long journalTimestamp,
+                           DataCallbacks.GenericCallback callback) {
 
         var user = FirebaseAuth.getInstance().getCurrentUser();
         if (user == null) {
@@ -378,7 +595,7 @@ public class ProgressService {
         }
 
         final String parentId = user.getUid();
-        final String docId = childId + "_" + moduleId;
+        final String docId = Progress.canonicalId(childId, moduleId);
 
         Map<String, Object> data = new HashMap<>();
         data.put("parentId", parentId);
@@ -390,17 +607,16 @@ public class ProgressService {
         data.put("completionStatus", score >= 70);
         data.put("timestamp", System.currentTimeMillis());
         data.put("lastUpdated", System.currentTimeMillis());
-        data.put("timeSpent", Math.max(0L, timeSpentMs));
-        data.put("plays", Math.max(1, plays));
         data.put("correct", Math.max(0, correct));
         data.put("incorrect", Math.max(0, incorrect));
         data.put("stars", Math.max(0, stars));
 
-        // Online write with merge to keep cumulative counters
-        db.collection("child_progress")
-                .document(docId)
-                .set(data, SetOptions.merge())
+        recordCounters(docId, parentId, childId, moduleId, playsDelta, timeSpentDeltaMs, journalTimestamp);
+
+        // Best score wins on the server too; counters travel separately as increments
+        ProgressDocWrites.setKeepingBest(db, docId, data)
                 .addOnSuccessListener(unused -> {
+                    counterSync.flush();
                     // Local cache update for offline-first dashboard
                     cacheProgressRecord(docId, parentId, childId, moduleId,
                             score, (score >= 70 ? "completed" : "in_progress"), true);
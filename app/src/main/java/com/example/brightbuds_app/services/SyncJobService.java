@@ -0,0 +1,156 @@
+package com.example.brightbuds_app.services;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.PersistableBundle;
+import android.util.Log;
+
+import com.example.brightbuds_app.interfaces.DataCallbacks;
+import com.example.brightbuds_app.utils.ConfigManager;
+import com.example.brightbuds_app.utils.Constants;
+import com.google.firebase.auth.FirebaseAuth;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * SyncJobService
+ * Background drain of offline progress, journaled game events and the
+ * SyncQueue, so backlogs clear without the user opening a particular screen.
+ *
+ * Two jobs share this service:
+ *  - a periodic drain every SYNC_INTERVAL_MS whenever a network is available
+ *  - a one-shot flush, requested when something is cached offline; its
+ *    network constraint makes it run as soon as connectivity returns
+ *
+ * A failed drain reschedules the flush with jittered exponential backoff,
+ * starting at SYNC_RETRY_DELAY_MS and capped at SYNC_INTERVAL_MS. Nothing
+ * runs while ConfigManager.isAutoSyncEnabled() is off.
+ */
+public class SyncJobService extends JobService {
+
+    private static final String TAG = "SyncJob";
+    private static final String EXTRA_ATTEMPT = "attempt";
+
+    /** Schedules the periodic drain once; later calls leave it alone */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) return;
+
+        for (JobInfo pending : scheduler.getAllPendingJobs()) {
+            if (pending.getId() == Constants.JOB_ID_SYNC_PERIODIC) return;
+        }
+
+        JobInfo job = new JobInfo.Builder(Constants.JOB_ID_SYNC_PERIODIC,
+                new ComponentName(context, SyncJobService.class))
+                .setPeriodic(Constants.SYNC_INTERVAL_MS)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .setPersisted(true)
+                .build();
+
+        int result = scheduler.schedule(job);
+        Log.i(TAG, result == JobScheduler.RESULT_SUCCESS
+                ? "✅ Periodic sync scheduled"
+                : "❌ Failed to schedule periodic sync");
+    }
+
+    /**
+     * Flushes pending changes as soon as a network is available. A flush
+     * already waiting (possibly backing off after failures) is left alone;
+     * it drains everything pending when it runs.
+     */
+    public static void requestSync(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) return;
+
+        for (JobInfo pending : scheduler.getAllPendingJobs()) {
+            if (pending.getId() == Constants.JOB_ID_SYNC_FLUSH) return;
+        }
+        scheduleFlush(context.getApplicationContext(), 0, 0L);
+    }
+
+    private static void scheduleFlush(Context context, int attempt, long delayMs) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) return;
+
+        PersistableBundle extras = new PersistableBundle();
+        extras.putInt(EXTRA_ATTEMPT, attempt);
+
+        // Same id: replaces any flush still waiting. Never call this for a running flush:
+        // rescheduling a running job's id stops it
+        JobInfo job = new JobInfo.Builder(Constants.JOB_ID_SYNC_FLUSH,
+                new ComponentName(context, SyncJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .setMinimumLatency(delayMs)
+                .setExtras(extras)
+                .setPersisted(true)
+                .build();
+        scheduler.schedule(job);
+    }
+
+    /** Full-jitter exponential backoff: random in [delay/2, delay], delay = base * 2^attempt */
+    static long backoffDelay(int attempt) {
+        long delay = Constants.SYNC_RETRY_DELAY_MS << Math.min(attempt, 20);
+        delay = Math.min(delay, Constants.SYNC_INTERVAL_MS);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        if (!ConfigManager.getInstance(this).isAutoSyncEnabled()) {
+            Log.d(TAG, "Auto sync disabled; skipping");
+            return false;
+        }
+        if (FirebaseAuth.getInstance().getCurrentUser() == null) {
+            Log.d(TAG, "No signed-in parent; skipping");
+            return false;
+        }
+
+        int attempt = params.getExtras().getInt(EXTRA_ATTEMPT, 0);
+        DataSyncManager sync = new DataSyncManager(this);
+
+        sync.syncAllPendingChanges(new DataCallbacks.GenericCallback() {
+            @Override
+            public void onSuccess(String progressResult) {
+                sync.syncQueuedOperations(new DataCallbacks.GenericCallback() {
+                    @Override
+                    public void onSuccess(String queueResult) {
+                        ConfigManager.getInstance(SyncJobService.this)
+                                .setLastSyncTime(System.currentTimeMillis());
+                        Log.i(TAG, "✅ " + progressResult + " | " + queueResult);
+                        jobFinished(params, false);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        retryLater(params, attempt, e);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                retryLater(params, attempt, e);
+            }
+        });
+        return true; // finishing asynchronously
+    }
+
+    private void retryLater(JobParameters params, int attempt, Exception e) {
+        long delay = backoffDelay(attempt);
+        Log.w(TAG, "⚠️ Sync attempt " + (attempt + 1) + " failed, retrying in " + delay + " ms", e);
+        // Finish first so the reschedule below cannot stop this very job
+        jobFinished(params, false);
+        scheduleFlush(getApplicationContext(), attempt + 1, delay);
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // Lost the network mid-drain; let JobScheduler rerun this job with its
+        // extras, so the attempt count and backoff are kept
+        return true;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.brightbuds_app.services;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SyncPipeline — Runs remote writes with a bounded number in flight.
+ *
+ * Up to maxInFlight uploads run at once; as each one settles the next unit
+ * starts, so a slow or failing write never blocks the rest of the backlog.
+ * Every unit ends up in exactly one bucket of the {@link Outcome}:
+ * succeeded, rejected (the server will never accept it as-is) or deferred
+ * (transient failure, try again next drain).
+ */
+final class SyncPipeline<T> {
+
+    /** Starts the remote write for one unit; the task settles when it is done */
+    interface Uploader<T> {
+        Task<?> upload(T unit) throws Exception;
+    }
+
+    static final class Outcome<T> {
+        final List<T> succeeded = new ArrayList<>();
+        final List<T> rejected = new ArrayList<>();
+        final List<T> deferred = new ArrayList<>();
+        Exception lastError;
+
+        int total() {
+            return succeeded.size() + rejected.size() + deferred.size();
+        }
+    }
+
+    private final int maxInFlight;
+
+    SyncPipeline(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    Task<Outcome<T>> run(List<T> units, Uploader<T> uploader) {
+        return new Run(units, uploader).start();
+    }
+
+    /**
+     * True when retrying the same write cannot succeed: bad data, missing
+     * document, or rules rejection from the server, or an argument the
+     * client refuses before any I/O (invalid document path, a value
+     * set() cannot serialize, an unknown queue operation). Those fail the
+     * same way on every drain, so they go to quarantine. Network, quota and
+     * local state errors (closed database or client) are transient.
+     */
+    static boolean isPermanent(Exception e) {
+        if (!(e instanceof FirebaseFirestoreException)) {
+            return e instanceof IllegalArgumentException;
+        }
+        switch (((FirebaseFirestoreException) e).getCode()) {
+            case INVALID_ARGUMENT:
+            case NOT_FOUND:
+            case ALREADY_EXISTS:
+            case PERMISSION_DENIED:
+            case FAILED_PRECONDITION:
+            case OUT_OF_RANGE:
+            case UNIMPLEMENTED:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private final class Run {
+        private final List<T> units;
+        private final Uploader<T> uploader;
+        private final Outcome<T> outcome = new Outcome<>();
+        private final TaskCompletionSource<Outcome<T>> done = new TaskCompletionSource<>();
+        private int next;
+
+        Run(List<T> units, Uploader<T> uploader) {
+            this.units = units;
+            this.uploader = uploader;
+        }
+
+        Task<Outcome<T>> start() {
+            if (units.isEmpty()) return Tasks.forResult(outcome);
+            int initial = Math.min(maxInFlight, units.size());
+            for (int i = 0; i < initial; i++) launchNext();
+            return done.getTask();
+        }
+
+        private void launchNext() {
+            T unit;
+            synchronized (this) {
+                if (next >= units.size()) return;
+                unit = units.get(next++);
+            }
+
+            Task<?> upload;
+            try {
+                upload = uploader.upload(unit);
+            } catch (Exception e) {
+                upload = Tasks.forException(e);
+            }
+            upload.addOnCompleteListener(task -> settle(unit, task.isSuccessful() ? null : task.getException()));
+        }
+
+        private void settle(T unit, Exception error) {
+            boolean finished;
+            synchronized (this) {
+                if (error == null) {
+                    outcome.succeeded.add(unit);
+                } else {
+                    outcome.lastError = error;
+                    if (isPermanent(error)) outcome.rejected.add(unit);
+                    else outcome.deferred.add(unit);
+                }
+                finished = outcome.total() == units.size();
+            }
+
+            if (finished) done.setResult(outcome);
+            else launchNext();
+        }
+    }
+}
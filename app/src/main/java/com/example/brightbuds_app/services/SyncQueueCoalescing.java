@@ -0,0 +1,50 @@
+package com.example.brightbuds_app.services;
+
+/**
+ * SyncQueueCoalescing — Merge rules for pending SyncQueue operations.
+ *
+ * At most one pending entry exists per (table_name, record_id). When a new
+ * operation arrives for a record that already has one, the two collapse
+ * into the single remote write that leaves Firestore in the same state:
+ *
+ *   pending \ new | insert   update   delete
+ *   --------------+---------------------------
+ *   insert        | insert   insert   (drop)
+ *   update        | insert   update   delete
+ *   delete        | insert   delete   delete
+ *
+ * "(drop)" means the record never needs to reach the server at all.
+ */
+final class SyncQueueCoalescing {
+
+    static final String OP_INSERT = "insert";
+    static final String OP_UPDATE = "update";
+    static final String OP_DELETE = "delete";
+
+    private SyncQueueCoalescing() { }
+
+    /** Returns the operation that replaces both, or null when the pair cancels out */
+    static String merge(String pending, String incoming) {
+        String p = normalize(pending);
+        String n = normalize(incoming);
+        if (p == null) return n;
+        if (n == null) return p;
+
+        switch (n) {
+            case OP_INSERT:
+                // A full set() supersedes whatever was pending
+                return OP_INSERT;
+            case OP_UPDATE:
+                // Updates ride along with a pending insert; they cannot revive a delete
+                return p.equals(OP_UPDATE) ? OP_UPDATE : p;
+            case OP_DELETE:
+                return p.equals(OP_INSERT) ? null : OP_DELETE;
+            default:
+                return n;
+        }
+    }
+
+    private static String normalize(String op) {
+        return op == null ? null : op.trim().toLowerCase();
+    }
+}
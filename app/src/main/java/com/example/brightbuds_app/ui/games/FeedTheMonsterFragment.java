@@ -24,6 +24,8 @@ import androidx.fragment.app.Fragment;
 
 import com.example.brightbuds_app.R;
 import com.example.brightbuds_app.interfaces.DataCallbacks;
+import com.example.brightbuds_app.services.DataSyncManager;
+import com.example.brightbuds_app.services.GameEventJournal;
 import com.example.brightbuds_app.services.ProgressService;
 import com.example.brightbuds_app.utils.Constants;
 
@@ -66,6 +68,8 @@ public class FeedTheMonsterFragment extends Fragment {
 
     // Session tracking
     private long sessionStartMs = 0L;
+    private long reportedTimeMs = 0L; // session time already saved as counter deltas
+    private boolean playReported = false;
     private int sessionRounds = 0;
     private int timesPlayed;
 
@@ -75,6 +79,8 @@ public class FeedTheMonsterFragment extends Fragment {
 
     // Services and audio
     private ProgressService progressService;
+    private GameEventJournal gameJournal;
+    private DataSyncManager syncManager;
     private MediaPlayer bgMusic;
     private TextToSpeech tts;
 
@@ -109,6 +115,8 @@ public class FeedTheMonsterFragment extends Fragment {
 
         // Initialise services and child reference
         progressService = new ProgressService(requireContext());
+        gameJournal = GameEventJournal.getInstance(requireContext());
+        syncManager = new DataSyncManager(requireContext());
         SharedPreferences parentPrefs =
                 requireContext().getSharedPreferences("BrightBudsPrefs", Context.MODE_PRIVATE);
         selectedChildId = parentPrefs.getString("selectedChildId", null);
@@ -443,27 +451,11 @@ public class FeedTheMonsterFragment extends Fragment {
             return;
         }
 
-        long now = System.currentTimeMillis();
-        long timeSpent = Math.max(0L, now - sessionStartMs);
-        int plays = Math.max(1, timesPlayed);
-
-        progressService.recordGameSession(
-                selectedChildId,
-                Constants.GAME_FEED_MONSTER,
-                score,
-                timeSpent,
-                stars,
-                totalCorrect,
-                totalIncorrect,
-                plays,
-                new DataCallbacks.GenericCallback() {
-                    @Override
-                    public void onSuccess(String result) { }
-
-                    @Override
-                    public void onFailure(Exception e) { }
-                }
-        );
+        // Every hit or miss lands in the journal; replay pushes the merged session
+        GameEventJournal.Event event = nextEvent();
+        if (!gameJournal.append(event)) {
+            writeSessionDirectly(event);
+        }
     }
 
     private void saveSessionMetricsSafely() {
@@ -471,19 +463,56 @@ public class FeedTheMonsterFragment extends Fragment {
             return;
         }
 
+        GameEventJournal.Event event = nextEvent();
+        if (!gameJournal.append(event)) {
+            writeSessionDirectly(event);
+            return;
+        }
+        gameJournal.checkpoint();
+        syncManager.replayGameJournal(new DataCallbacks.GenericCallback() {
+            @Override
+            public void onSuccess(String result) { }
+
+            @Override
+            public void onFailure(Exception e) { }
+        });
+    }
+
+    /**
+     * Current score/answers plus what this session added since the last
+     * event: one play the first time, then only the elapsed time.
+     */
+    private GameEventJournal.Event nextEvent() {
         long now = System.currentTimeMillis();
-        long timeSpent = Math.max(0L, now - sessionStartMs);
-        int plays = Math.max(1, timesPlayed);
+        long elapsed = Math.max(0L, now - sessionStartMs);
+        long timeDelta = Math.max(0L, elapsed - reportedTimeMs);
+        int playsDelta = playReported ? 0 : 1;
+        reportedTimeMs = Math.max(reportedTimeMs, elapsed);
+        playReported = true;
 
-        progressService.recordGameSession(
+        return new GameEventJournal.Event(
                 selectedChildId,
                 Constants.GAME_FEED_MONSTER,
+                now,
                 score,
-                timeSpent,
+                timeDelta,
                 stars,
                 totalCorrect,
                 totalIncorrect,
-                plays,
+                playsDelta);
+    }
+
+    /** Fallback when the journal is unavailable or full */
+    private void writeSessionDirectly(GameEventJournal.Event event) {
+        progressService.recordGameSession(
+                event.childId,
+                event.moduleId,
+                event.score,
+                event.timeSpentDeltaMs,
+                event.stars,
+                event.correct,
+                event.incorrect,
+                event.playsDelta,
                 new DataCallbacks.GenericCallback() {
                     @Override
                     public void onSuccess(String result) { }
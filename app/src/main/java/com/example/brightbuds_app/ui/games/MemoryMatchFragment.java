@@ -456,8 +456,8 @@ public class MemoryMatchFragment extends Fragment implements MemoryMatchAdapter.
         if (selectedChildId == null) return;
 
         int incorrect = attemptsCount - matchesFound;
-        int plays = Math.max(1, timesPlayed);
 
+        // One finished game: a single play and its time, added to this device's counters
         progressService.recordGameSession(
                 selectedChildId,
                 Constants.GAME_MEMORY_MATCH,
@@ -466,7 +466,7 @@ public class MemoryMatchFragment extends Fragment implements MemoryMatchAdapter.
                 starsEarned,
                 matchesFound,
                 incorrect,
-                plays,
+                1,
                 new DataCallbacks.GenericCallback() {
                     @Override
                     public void onSuccess(String r) { }
@@ -0,0 +1,131 @@
+package com.example.brightbuds_app.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.brightbuds_app.interfaces.DataCallbacks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BatchDecryptor
+ * -----------------------
+ * Decrypts lists of EncryptionUtil ciphertexts on a bounded worker pool.
+ *
+ * Results are returned in the same order as the input, and each entry
+ * follows EncryptionUtil.decrypt semantics ("" for null/invalid input).
+ * Use {@link #decryptAllAsync} from Firestore callbacks so the work never
+ * lands on the main thread; the callback is delivered on the main thread.
+ */
+public final class BatchDecryptor {
+
+    private static final String TAG = "BatchDecryptor";
+
+    // Below this size the hand-off to the pool costs more than it saves
+    private static final int MIN_PARALLEL_BATCH = 8;
+
+    private static final int POOL_SIZE =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private static final ExecutorService WORKERS =
+            Executors.newFixedThreadPool(POOL_SIZE, r -> {
+                Thread t = new Thread(r, "BatchDecryptor-" + THREAD_COUNT.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+    // Separate coordinator so a blocking decryptAll() never occupies a worker slot
+    private static final ExecutorService COORDINATOR =
+            Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "BatchDecryptor-coordinator");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    private BatchDecryptor() {
+        throw new UnsupportedOperationException("BatchDecryptor should not be instantiated");
+    }
+
+    /**
+     * Decrypts every entry and blocks until all are done.
+     * Must not be called from a BatchDecryptor worker thread.
+     */
+    public static List<String> decryptAll(List<String> ciphertexts) {
+        if (ciphertexts == null || ciphertexts.isEmpty()) return new ArrayList<>();
+
+        int size = ciphertexts.size();
+        String[] results = new String[size];
+
+        if (size < MIN_PARALLEL_BATCH) {
+            for (int i = 0; i < size; i++) results[i] = EncryptionUtil.decrypt(ciphertexts.get(i));
+            return new ArrayList<>(Arrays.asList(results));
+        }
+
+        // One contiguous slice per worker keeps the per-thread cipher hot
+        int slices = Math.min(POOL_SIZE, size);
+        int sliceSize = (size + slices - 1) / slices;
+        List<Future<?>> futures = new ArrayList<>(slices);
+
+        for (int start = 0; start < size; start += sliceSize) {
+            final int from = start;
+            final int to = Math.min(size, start + sliceSize);
+            futures.add(WORKERS.submit(() -> {
+                for (int i = from; i < to; i++) {
+                    results[i] = EncryptionUtil.decrypt(ciphertexts.get(i));
+                }
+            }));
+        }
+
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Log.w(TAG, "⚠️ Batch decryption interrupted");
+                break;
+            } catch (Exception e) {
+                Log.e(TAG, "❌ Batch decryption slice failed: " + e.getMessage());
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (results[i] == null) results[i] = "";
+        }
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    /** Decrypts off the main thread and delivers the ordered results on the main thread. */
+    public static void decryptAllAsync(List<String> ciphertexts,
+                                       DataCallbacks.GenericListCallback<String> callback) {
+        if (ciphertexts == null || ciphertexts.isEmpty()) {
+            callback.onSuccess(Collections.emptyList());
+            return;
+        }
+
+        final List<String> snapshot = new ArrayList<>(ciphertexts);
+        COORDINATOR.execute(() -> {
+            try {
+                long start = System.nanoTime();
+                List<String> plain = decryptAll(snapshot);
+                Log.d(TAG, "🔓 Decrypted " + plain.size() + " values in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
+                MAIN_HANDLER.post(() -> callback.onSuccess(plain));
+            } catch (Exception e) {
+                Log.e(TAG, "❌ Batch decryption failed", e);
+                MAIN_HANDLER.post(() -> callback.onFailure(e));
+            }
+        });
+    }
+}
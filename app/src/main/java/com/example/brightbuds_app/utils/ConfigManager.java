@@ -5,13 +5,21 @@ import android.util.Log;
 
 import com.google.firebase.remoteconfig.FirebaseRemoteConfig;
 import com.google.firebase.remoteconfig.FirebaseRemoteConfigSettings;
+import com.google.firebase.remoteconfig.FirebaseRemoteConfigValue;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * ConfigManager
  * Handles configuration by combining Firebase Remote Config and SecurePreferences.
  * Provides cloud values with local encrypted fallback.
+ *
+ * Reads are served from an immutable {@link ConfigSnapshot} published through a
+ * volatile field. It is seeded from the last persisted values at startup,
+ * then rebuilt from every activated Remote Config key once the SDK has loaded
+ * them and again whenever fetchAndActivate() succeeds.
  */
 public class ConfigManager {
 
@@ -23,12 +31,16 @@ public class ConfigManager {
     private final FirebaseRemoteConfig remoteConfig;
 
     private boolean isInitialized = false;
+    private volatile ConfigSnapshot snapshot;
 
     private ConfigManager(Context context) {
         this.context = context.getApplicationContext();
         this.securePrefs = new SecurePreferences(this.context);
         this.remoteConfig = FirebaseRemoteConfig.getInstance();
+        this.snapshot = loadPersistedSnapshot();
         initializeRemoteConfig();
+        // Activated values from the previous run, including keys with no compiled-in default
+        remoteConfig.ensureInitialized().addOnSuccessListener(info -> snapshot = buildRemoteSnapshot());
     }
 
     public static synchronized ConfigManager getInstance(Context context) {
@@ -66,6 +78,7 @@ public class ConfigManager {
         remoteConfig.fetchAndActivate().addOnCompleteListener(task -> {
             if (task.isSuccessful()) {
                 Log.i(TAG, "Remote Config fetched and activated");
+                snapshot = buildRemoteSnapshot();
                 persistRemoteConfigValues();
                 callback.onSuccess(true);
             } else {
@@ -75,86 +88,113 @@ public class ConfigManager {
         });
     }
 
-    // Correct persistence using types from defaults map
+    // Correct persistence using types from defaults map; one batch = one encryption + one disk write
     private void persistRemoteConfigValues() {
         try {
+            ConfigSnapshot current = snapshot;
             Map<String, Object> defaults = Constants.getRemoteConfigDefaults();
+            SecurePreferences.Editor editor = securePrefs.edit();
             for (String key : defaults.keySet()) {
                 Object def = defaults.get(key);
                 if (def instanceof Boolean) {
-                    securePrefs.putBoolean(key, remoteConfig.getBoolean(key));
+                    editor.putBoolean(key, current.getBoolean(key, (Boolean) def));
                 } else if (def instanceof Number) {
-                    long val = (long) remoteConfig.getDouble(key);
-                    securePrefs.putLong(key, val);
+                    editor.putLong(key, current.getLong(key, ((Number) def).longValue()));
                 } else {
-                    securePrefs.putString(key, remoteConfig.getString(key));
+                    editor.putString(key, current.getString(key, String.valueOf(def)));
                 }
             }
+            editor.apply();
             Log.d(TAG, "Remote Config values persisted locally");
         } catch (Exception e) {
             Log.e(TAG, "Error persisting Remote Config values", e);
         }
     }
 
-    public boolean getBoolean(String key, boolean defaultValue) {
+    /** Every activated Remote Config key; typed like its default where it has one */
+    private ConfigSnapshot buildRemoteSnapshot() {
         try {
-            return remoteConfig.getBoolean(key);
+            Map<String, Object> defaults = Constants.getRemoteConfigDefaults();
+            Map<String, Object> values = new HashMap<>();
+            for (Map.Entry<String, FirebaseRemoteConfigValue> entry : remoteConfig.getAll().entrySet()) {
+                String key = entry.getKey();
+                Object def = defaults.get(key);
+                if (def instanceof Boolean) {
+                    values.put(key, remoteConfig.getBoolean(key));
+                } else if (def instanceof Number) {
+                    values.put(key, remoteConfig.getDouble(key));
+                } else {
+                    values.put(key, entry.getValue().asString());
+                }
+            }
+            return ConfigSnapshot.of(values);
         } catch (Exception e) {
-            return securePrefs.getBoolean(key, defaultValue);
+            Log.e(TAG, "Error reading Remote Config, keeping previous values", e);
+            return snapshot;
         }
     }
 
-    public String getString(String key, String defaultValue) {
-        try {
-            return remoteConfig.getString(key);
-        } catch (Exception e) {
-            return securePrefs.getString(key, defaultValue);
+    /** Last values persisted by a successful activation, or defaults on first run */
+    private ConfigSnapshot loadPersistedSnapshot() {
+        Map<String, Object> defaults = Constants.getRemoteConfigDefaults();
+        Map<String, Object> values = new HashMap<>();
+        for (String key : defaults.keySet()) {
+            if (!securePrefs.contains(key)) continue;
+            Object def = defaults.get(key);
+            if (def instanceof Boolean) {
+                values.put(key, securePrefs.getBoolean(key, (Boolean) def));
+            } else if (def instanceof Number) {
+                values.put(key, securePrefs.getLong(key, ((Number) def).longValue()));
+            } else {
+                values.put(key, securePrefs.getString(key, String.valueOf(def)));
+            }
         }
+        return ConfigSnapshot.of(values);
+    }
+
+    /** Current immutable config; safe to hold and read from any thread */
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return snapshot.getBoolean(key, defaultValue);
+    }
+
+    public String getString(String key, String defaultValue) {
+        return snapshot.getString(key, defaultValue);
     }
 
     public long getLong(String key, long defaultValue) {
-        try {
-            return remoteConfig.getLong(key);
-        } catch (Exception e) {
-            return securePrefs.getLong(key, defaultValue);
-        }
+        return snapshot.getLong(key, defaultValue);
     }
 
     public double getDouble(String key, double defaultValue) {
-        try {
-            return remoteConfig.getDouble(key);
-        } catch (Exception e) {
-            String localVal = securePrefs.getString(key, String.valueOf(defaultValue));
-            try {
-                return Double.parseDouble(localVal);
-            } catch (NumberFormatException ex) {
-                return defaultValue;
-            }
-        }
+        return snapshot.getDouble(key, defaultValue);
     }
 
     public boolean isAutoReportEnabled() {
-        return getBoolean(Constants.REMOTE_AUTO_REPORT_ENABLED, Constants.AUTO_GENERATE_REPORTS);
+        return snapshot.autoReportEnabled;
     }
 
     public int getDailySessionLimit() {
-        return (int) getLong(Constants.REMOTE_DAILY_SESSION_LIMIT, Constants.DAILY_SESSION_LIMIT);
+        return snapshot.dailySessionLimit;
     }
 
     public int getWeeklyReportDay() {
-        return (int) getLong(Constants.REMOTE_WEEKLY_REPORT_DAY, 0);
+        return snapshot.weeklyReportDay;
     }
 
     public int getSessionTimeLimit() {
-        return (int) getLong(Constants.REMOTE_SESSION_TIME_LIMIT, Constants.MAX_SESSION_TIME_MINUTES);
+        return snapshot.sessionTimeLimit;
     }
 
     public boolean isFamilyModuleEnabled() {
-        return getBoolean(Constants.REMOTE_FEATURE_FLAG_FAMILY_MODULE, true);
+        return snapshot.familyModuleEnabled;
     }
 
     public boolean isAdvancedAnalyticsEnabled() {
-        return getBoolean(Constants.REMOTE_FEATURE_FLAG_ADVANCED_ANALYTICS, false);
+        return snapshot.advancedAnalyticsEnabled;
     }
 
     public void setAutoSyncEnabled(boolean enabled) {
@@ -181,8 +221,33 @@ public class ConfigManager {
         return securePrefs.getLong(Constants.PREF_LAST_SYNC_TIME, 0L);
     }
 
+    /**
+     * Stable id for this install, used as the device's slot in per-device
+     * counters. Survives clearLocalCache(); a new id would count this
+     * device's history twice.
+     */
+    public synchronized String getDeviceId() {
+        String id = securePrefs.getString(Constants.PREF_DEVICE_ID, null);
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+            securePrefs.putString(Constants.PREF_DEVICE_ID, id);
+        }
+        return id;
+    }
+
+    /** True once this parent's duplicate child_progress documents have been merged */
+    public boolean isProgressDeduplicated(String parentId) {
+        return securePrefs.getBoolean(Constants.PREF_PROGRESS_DEDUP_DONE + "_" + parentId, false);
+    }
+
+    public void setProgressDeduplicated(String parentId) {
+        securePrefs.putBoolean(Constants.PREF_PROGRESS_DEDUP_DONE + "_" + parentId, true);
+    }
+
     public void clearLocalCache() {
+        String deviceId = getDeviceId();
         securePrefs.clearAll();
+        securePrefs.putString(Constants.PREF_DEVICE_ID, deviceId);
         Log.i(TAG, "Local Config cache cleared");
     }
 
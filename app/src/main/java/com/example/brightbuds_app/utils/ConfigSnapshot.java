@@ -0,0 +1,81 @@
+package com.example.brightbuds_app.utils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ConfigSnapshot
+ * Immutable, typed view of every Remote Config value the app uses.
+ * ConfigManager publishes a new instance through a volatile field after each
+ * activation, so hot-path reads are a plain field load.
+ */
+public final class ConfigSnapshot {
+
+    public final boolean autoReportEnabled;
+    public final int dailySessionLimit;
+    public final int weeklyReportDay;
+    public final int sessionTimeLimit;
+    public final boolean familyModuleEnabled;
+    public final boolean advancedAnalyticsEnabled;
+
+    // Raw typed values for generic getBoolean/getLong/getDouble/getString lookups
+    private final Map<String, Object> values;
+
+    private ConfigSnapshot(Map<String, Object> values) {
+        this.values = Collections.unmodifiableMap(new HashMap<>(values));
+        this.autoReportEnabled = bool(Constants.REMOTE_AUTO_REPORT_ENABLED, Constants.AUTO_GENERATE_REPORTS);
+        this.dailySessionLimit = (int) number(Constants.REMOTE_DAILY_SESSION_LIMIT, Constants.DAILY_SESSION_LIMIT);
+        this.weeklyReportDay = (int) number(Constants.REMOTE_WEEKLY_REPORT_DAY, 0);
+        this.sessionTimeLimit = (int) number(Constants.REMOTE_SESSION_TIME_LIMIT, Constants.MAX_SESSION_TIME_MINUTES);
+        this.familyModuleEnabled = bool(Constants.REMOTE_FEATURE_FLAG_FAMILY_MODULE, true);
+        this.advancedAnalyticsEnabled = bool(Constants.REMOTE_FEATURE_FLAG_ADVANCED_ANALYTICS, false);
+    }
+
+    /**
+     * Snapshot from typed values keyed like Constants.getRemoteConfigDefaults().
+     * Keys outside the defaults are kept too, so the generic getters see them.
+     */
+    public static ConfigSnapshot of(Map<String, Object> values) {
+        Map<String, Object> merged = new HashMap<>(Constants.getRemoteConfigDefaults());
+        merged.putAll(values);
+        return new ConfigSnapshot(merged);
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return bool(key, defaultValue);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        return (long) number(key, defaultValue);
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        return number(key, defaultValue);
+    }
+
+    public String getString(String key, String defaultValue) {
+        Object v = values.get(key);
+        return v != null ? String.valueOf(v) : defaultValue;
+    }
+
+    private boolean bool(String key, boolean defaultValue) {
+        Object v = values.get(key);
+        if (v instanceof Boolean) return (Boolean) v;
+        if (v instanceof String) return Boolean.parseBoolean((String) v);
+        return defaultValue;
+    }
+
+    private double number(String key, double defaultValue) {
+        Object v = values.get(key);
+        if (v instanceof Number) return ((Number) v).doubleValue();
+        if (v instanceof String) {
+            try {
+                return Double.parseDouble((String) v);
+            } catch (NumberFormatException e) {
+                return defaultValue;
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -145,6 +145,23 @@ public final class Constants {
     public static final long MAX_OFFLINE_STORAGE_DAYS = 30;
     public static final int MAX_SYNC_RETRIES = 3;
     public static final long SYNC_RETRY_DELAY_MS = 5 * ONE_SECOND_MS;
+    public static final int FIRESTORE_BATCH_LIMIT = 500; // max writes per WriteBatch commit
+    public static final int SYNC_MAX_IN_FLIGHT = 4; // concurrent remote writes during a drain
+    public static final long PROGRESS_DELTA_OVERLAP_MS = 5 * ONE_MINUTE_MS; // re-read window for device clock skew
+    public static final long DB_COMPACTION_INTERVAL_MS = ONE_DAY_MS;
+
+    // BACKGROUND JOB IDS
+    public static final int JOB_ID_DB_COMPACTION = 2001;
+    public static final int JOB_ID_SYNC_PERIODIC = 2002;
+    public static final int JOB_ID_SYNC_FLUSH = 2003;
+    public static final int JOB_ID_PROGRESS_DEDUP = 2004;
+
+    // PAGINATION
+    public static final int PROGRESS_PAGE_SIZE = 50;
+    public static final int PROGRESS_PAGE_SIZE_MAX = 500;
+
+    // ENCRYPTION
+    public static final int DECRYPT_CACHE_MAX_ENTRIES = 512;
 
     // NOTIFICATION SETTINGS
     public static final String NOTIFICATION_CHANNEL_PROGRESS = "progress_updates";
@@ -165,6 +182,8 @@ public final class Constants {
     public static final String PREF_SOUND_EFFECTS_ENABLED = "sound_effects_enabled";
     public static final String PREF_MUSIC_ENABLED = "music_enabled";
     public static final String PREF_LAST_REPORT_GENERATED = "last_report_generated";
+    public static final String PREF_DEVICE_ID = "device_id";
+    public static final String PREF_PROGRESS_DEDUP_DONE = "progress_dedup_done";
 
     // ERROR CODES
     public static final String ERROR_NETWORK_UNAVAILABLE = "network_unavailable";
@@ -0,0 +1,119 @@
+package com.example.brightbuds_app.utils;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * DecryptingInputStream
+ * Reads the {@link StreamingEncryption} format one chunk at a time and
+ * exposes the plaintext. Only authenticated chunks are ever returned; a
+ * tampered or truncated file surfaces as an IOException.
+ */
+public class DecryptingInputStream extends InputStream {
+
+    private final DataInputStream in;
+    private final Cipher cipher;
+    private final byte[] header = new byte[StreamingEncryption.HEADER_LENGTH];
+    private final byte[] noncePrefix = new byte[StreamingEncryption.NONCE_PREFIX_LENGTH];
+    private final byte[] sealed;
+    private final byte[] plain;
+    private int plainPos = 0;
+    private int plainLen = 0;
+    private int chunkIndex = 0;
+    private boolean sawFinal = false;
+
+    public DecryptingInputStream(InputStream source) throws IOException {
+        this.in = new DataInputStream(source);
+        StreamingEncryption.readHeader(in, header);
+        System.arraycopy(header, 8, noncePrefix, 0, StreamingEncryption.NONCE_PREFIX_LENGTH);
+
+        int chunkSize = ((header[4] & 0xff) << 24) | ((header[5] & 0xff) << 16)
+                | ((header[6] & 0xff) << 8) | (header[7] & 0xff);
+        if (chunkSize <= 0 || chunkSize > StreamingEncryption.MAX_CHUNK_SIZE) {
+            throw new IOException("Invalid chunk size in header: " + chunkSize);
+        }
+        this.sealed = new byte[chunkSize + StreamingEncryption.TAG_LENGTH];
+        this.plain = new byte[chunkSize];
+
+        try {
+            this.cipher = Cipher.getInstance(KeyManager.AES_GCM);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("AES/GCM unavailable", e);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) return -1;
+        return plain[plainPos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!fill()) return -1;
+        int n = Math.min(len, plainLen - plainPos);
+        System.arraycopy(plain, plainPos, b, off, n);
+        plainPos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return plainLen - plainPos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /** Ensures decrypted bytes are buffered; false at authenticated end of stream. */
+    private boolean fill() throws IOException {
+        while (plainPos == plainLen) {
+            if (sawFinal) return false;
+            openNextChunk();
+        }
+        return true;
+    }
+
+    private void openNextChunk() throws IOException {
+        int frame;
+        try {
+            frame = in.readInt();
+        } catch (EOFException e) {
+            throw new IOException("Encrypted stream truncated before final chunk", e);
+        }
+
+        boolean last = (frame & StreamingEncryption.FINAL_FLAG) != 0;
+        int len = frame & ~StreamingEncryption.FINAL_FLAG;
+        if (len < StreamingEncryption.TAG_LENGTH || len > sealed.length) {
+            throw new IOException("Corrupt chunk length: " + len);
+        }
+        in.readFully(sealed, 0, len);
+
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, KeyManager.getKey(),
+                    new GCMParameterSpec(StreamingEncryption.TAG_BITS,
+                            StreamingEncryption.nonce(noncePrefix, chunkIndex)));
+            cipher.updateAAD(header);
+            cipher.updateAAD(new byte[]{(byte) (last ? 1 : 0)});
+            plainLen = cipher.doFinal(sealed, 0, len, plain, 0);
+        } catch (AEADBadTagException e) {
+            throw new IOException("Encrypted chunk " + chunkIndex + " failed authentication", e);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Chunk decryption failed", e);
+        }
+
+        plainPos = 0;
+        chunkIndex++;
+        sawFinal = last;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.brightbuds_app.utils;
+
+import android.util.Log;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * DecryptionCache
+ * -----------------------
+ * Bounded in-memory LRU cache of EncryptionUtil.decrypt results.
+ *
+ * Entries are keyed by a SHA-256 digest of the ciphertext, so the cache
+ * holds fixed-size keys no matter how long the stored Base64 blob is.
+ * Plaintext only ever lives in this heap map; it is never written to disk
+ * and is dropped on logout via {@link #clear()}.
+ */
+public final class DecryptionCache {
+
+    private static final String TAG = "DecryptionCache";
+
+    private static int maxEntries = Constants.DECRYPT_CACHE_MAX_ENTRIES;
+
+    private static final LinkedHashMap<DigestKey, String> CACHE =
+            new LinkedHashMap<DigestKey, String>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<DigestKey, String> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+
+    private static final ThreadLocal<MessageDigest> SHA256 = new ThreadLocal<>();
+
+    private DecryptionCache() {
+        throw new UnsupportedOperationException("DecryptionCache should not be instantiated");
+    }
+
+    /** Returns the cached plaintext for this ciphertext, or null on a miss. */
+    public static String get(String ciphertext) {
+        DigestKey key = keyFor(ciphertext);
+        if (key == null) return null;
+        synchronized (CACHE) {
+            return CACHE.get(key);
+        }
+    }
+
+    /** Caches a successful decryption. Empty results (failures) are not cached. */
+    public static void put(String ciphertext, String plaintext) {
+        if (plaintext == null || plaintext.isEmpty()) return;
+        DigestKey key = keyFor(ciphertext);
+        if (key == null) return;
+        synchronized (CACHE) {
+            CACHE.put(key, plaintext);
+        }
+    }
+
+    /** Changes the entry limit; a limit of 0 disables caching. */
+    public static void setMaxEntries(int limit) {
+        synchronized (CACHE) {
+            maxEntries = Math.max(0, limit);
+            if (CACHE.size() > maxEntries) {
+                Iterator<DigestKey> it = CACHE.keySet().iterator();
+                while (CACHE.size() > maxEntries && it.hasNext()) {
+                    it.next();
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public static int size() {
+        synchronized (CACHE) {
+            return CACHE.size();
+        }
+    }
+
+    public static void clear() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+        Log.i(TAG, "Decrypted value cache cleared");
+    }
+
+    private static DigestKey keyFor(String ciphertext) {
+        if (ciphertext == null || ciphertext.isEmpty()) return null;
+        try {
+            MessageDigest md = SHA256.get();
+            if (md == null) {
+                md = MessageDigest.getInstance("SHA-256");
+                SHA256.set(md);
+            }
+            return new DigestKey(md.digest(ciphertext.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            Log.e(TAG, "SHA-256 unavailable, bypassing cache", e);
+            return null;
+        }
+    }
+
+    /** 32-byte digest wrapper with value equality; hashCode precomputed from the digest */
+    private static final class DigestKey {
+        private final byte[] digest;
+        private final int hash;
+
+        DigestKey(byte[] digest) {
+            this.digest = digest;
+            this.hash = Arrays.hashCode(digest);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof DigestKey && MessageDigest.isEqual(digest, ((DigestKey) o).digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
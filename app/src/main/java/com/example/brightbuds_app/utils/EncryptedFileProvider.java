@@ -0,0 +1,185 @@
+package com.example.brightbuds_app.utils;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.Environment;
+import android.os.ParcelFileDescriptor;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * EncryptedFileProvider
+ * Serves files written with {@link StreamingEncryption} to other apps
+ * (e.g. a PDF viewer) as plaintext.
+ *
+ * PDF viewers and PdfRenderer seek and need the document size, which a
+ * pipe cannot give them, so openFile() decrypts into a copy under the
+ * app-private cache and returns that file's descriptor; query() reports
+ * its length. A copy is reused while its report is unchanged and removed
+ * once the report is gone. Only files inside the report directory are
+ * served; access is granted per-URI via FLAG_GRANT_READ_URI_PERMISSION.
+ */
+public class EncryptedFileProvider extends ContentProvider {
+
+    private static final String TAG = "EncryptedFileProvider";
+    private static final String PATH_REPORTS = "reports";
+    private static final String VIEW_CACHE_DIR = "report_views";
+
+    public static String authority(Context context) {
+        return context.getPackageName() + ".encryptedfiles";
+    }
+
+    /** Content URI for a report file created by PDFReportService */
+    public static Uri getReportUri(Context context, File file) {
+        return new Uri.Builder()
+                .scheme("content")
+                .authority(authority(context))
+                .appendPath(PATH_REPORTS)
+                .appendPath(file.getName())
+                .build();
+    }
+
+    public static File getReportsDir(Context context) {
+        return new File(context.getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS), "BrightBudsReports");
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public ParcelFileDescriptor openFile(@NonNull Uri uri, @NonNull String mode) throws FileNotFoundException {
+        if (!"r".equals(mode)) throw new FileNotFoundException("Read-only provider");
+        return ParcelFileDescriptor.open(plaintextFile(uri), ParcelFileDescriptor.MODE_READ_ONLY);
+    }
+
+    @Nullable
+    @Override
+    public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
+                        @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        File plain;
+        try {
+            plain = plaintextFile(uri);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        MatrixCursor cursor = new MatrixCursor(new String[]{OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE});
+        cursor.addRow(new Object[]{uri.getLastPathSegment(), plain.length()});
+        return cursor;
+    }
+
+    @Nullable
+    @Override
+    public String getType(@NonNull Uri uri) {
+        String name = uri.getLastPathSegment();
+        if (name != null && name.toLowerCase().endsWith(".pdf")) return "application/pdf";
+        if (name != null && name.toLowerCase().endsWith(".jpg")) return "image/jpeg";
+        return "application/octet-stream";
+    }
+
+    @Nullable
+    @Override
+    public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
+        throw new UnsupportedOperationException("Read-only provider");
+    }
+
+    @Override
+    public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        throw new UnsupportedOperationException("Read-only provider");
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection,
+                      @Nullable String[] selectionArgs) {
+        throw new UnsupportedOperationException("Read-only provider");
+    }
+
+    /** The report itself if it predates encryption, otherwise its decrypted copy */
+    private File plaintextFile(Uri uri) throws FileNotFoundException {
+        File file = resolve(uri);
+        if (!StreamingEncryption.isEncrypted(file)) return file;
+        try {
+            return decryptedCopy(file);
+        } catch (IOException e) {
+            throw new FileNotFoundException("Cannot open " + uri + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Decrypts {@code source} into the view cache unless an up-to-date copy
+     * is already there. The copy carries the report's modification time, so
+     * a regenerated report is decrypted again. Synchronized because viewers
+     * call query() and openFile() from different binder threads.
+     */
+    private synchronized File decryptedCopy(File source) throws IOException {
+        File dir = new File(getContext().getCacheDir(), VIEW_CACHE_DIR);
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        pruneViewCache(dir);
+
+        File copy = new File(dir, source.getName());
+        if (copy.isFile() && copy.lastModified() == source.lastModified()) return copy;
+
+        File partial = new File(dir, source.getName() + ".part");
+        try (InputStream in = StreamingEncryption.openDecrypted(source);
+             OutputStream out = new FileOutputStream(partial)) {
+            byte[] buffer = new byte[StreamingEncryption.DEFAULT_CHUNK_SIZE];
+            int len;
+            while ((len = in.read(buffer)) != -1) out.write(buffer, 0, len);
+        } catch (IOException e) {
+            partial.delete();
+            throw e;
+        }
+        partial.setLastModified(source.lastModified());
+        if (!partial.renameTo(copy)) {
+            partial.delete();
+            throw new IOException("Cannot move decrypted copy into place");
+        }
+        return copy;
+    }
+
+    /** Drops copies whose report was deleted or replaced, and interrupted decrypts */
+    private void pruneViewCache(File dir) {
+        File[] copies = dir.listFiles();
+        if (copies == null) return;
+        File reports = getReportsDir(getContext());
+        for (File copy : copies) {
+            File source = new File(reports, copy.getName());
+            if (!source.isFile() || source.lastModified() != copy.lastModified()) {
+                if (!copy.delete()) Log.w(TAG, "Could not remove stale copy " + copy.getName());
+            }
+        }
+    }
+
+    private File resolve(Uri uri) throws FileNotFoundException {
+        if (getContext() == null || uri.getPathSegments().size() != 2
+                || !PATH_REPORTS.equals(uri.getPathSegments().get(0))) {
+            throw new FileNotFoundException("Unknown URI: " + uri);
+        }
+        try {
+            File dir = getReportsDir(getContext()).getCanonicalFile();
+            File file = new File(dir, uri.getPathSegments().get(1)).getCanonicalFile();
+            if (!dir.equals(file.getParentFile()) || !file.isFile()) {
+                throw new FileNotFoundException("Not a report file: " + uri);
+            }
+            return file;
+        } catch (IOException e) {
+            throw new FileNotFoundException(e.getMessage());
+        }
+    }
+}
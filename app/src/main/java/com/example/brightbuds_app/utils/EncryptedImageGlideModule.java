@@ -0,0 +1,142 @@
+package com.example.brightbuds_app.utils;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.Registry;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.module.GlideModule;
+import com.bumptech.glide.signature.ObjectKey;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * EncryptedImageGlideModule
+ * Lets Glide load photos stored with {@link StreamingEncryption}.
+ *
+ * Usage: Glide.with(ctx).load(new EncryptedImageGlideModule.EncryptedFile(file))
+ * The decoder reads straight from a DecryptingInputStream, so no plaintext
+ * copy of the photo is written to disk or held in a byte array.
+ * Files saved before encryption was added are read as plain files.
+ *
+ * Registered through the manifest (no annotation processor in this build).
+ */
+@SuppressWarnings("deprecation")
+public class EncryptedImageGlideModule implements GlideModule {
+
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        // defaults are fine
+    }
+
+    @Override
+    public void registerComponents(@NonNull Context context, @NonNull Glide glide, @NonNull Registry registry) {
+        registry.prepend(EncryptedFile.class, InputStream.class, new Factory());
+    }
+
+    /** Glide model for an on-device photo that may be encrypted */
+    public static final class EncryptedFile {
+        private final File file;
+
+        public EncryptedFile(File file) {
+            this.file = file;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof EncryptedFile && file.equals(((EncryptedFile) o).file);
+        }
+
+        @Override
+        public int hashCode() {
+            return file.hashCode();
+        }
+    }
+
+    private static final class Factory implements ModelLoaderFactory<EncryptedFile, InputStream> {
+        @NonNull
+        @Override
+        public ModelLoader<EncryptedFile, InputStream> build(@NonNull MultiModelLoaderFactory multiFactory) {
+            return new Loader();
+        }
+
+        @Override
+        public void teardown() { }
+    }
+
+    private static final class Loader implements ModelLoader<EncryptedFile, InputStream> {
+        @Nullable
+        @Override
+        public LoadData<InputStream> buildLoadData(@NonNull EncryptedFile model, int width, int height,
+                                                   @NonNull Options options) {
+            // Include mtime so a replaced photo isn't served from Glide's cache
+            String key = model.getFile().getAbsolutePath() + "@" + model.getFile().lastModified();
+            return new LoadData<>(new ObjectKey(key), new Fetcher(model.getFile()));
+        }
+
+        @Override
+        public boolean handles(@NonNull EncryptedFile model) {
+            return true;
+        }
+    }
+
+    private static final class Fetcher implements DataFetcher<InputStream> {
+        private final File file;
+        private InputStream stream;
+
+        Fetcher(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public void loadData(@NonNull Priority priority, @NonNull DataCallback<? super InputStream> callback) {
+            try {
+                stream = StreamingEncryption.openMaybeEncrypted(file);
+                callback.onDataReady(stream);
+            } catch (IOException e) {
+                callback.onLoadFailed(e);
+            }
+        }
+
+        @Override
+        public void cleanup() {
+            if (stream == null) return;
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+                // nothing to recover
+            }
+        }
+
+        @Override
+        public void cancel() { }
+
+        @NonNull
+        @Override
+        public Class<InputStream> getDataClass() {
+            return InputStream.class;
+        }
+
+        @NonNull
+        @Override
+        public DataSource getDataSource() {
+            return DataSource.LOCAL;
+        }
+    }
+}
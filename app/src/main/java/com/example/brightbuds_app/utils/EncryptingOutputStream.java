@@ -0,0 +1,115 @@
+package com.example.brightbuds_app.utils;
+
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * EncryptingOutputStream
+ * Buffers at most one chunk of plaintext and writes sealed frames in the
+ * {@link StreamingEncryption} format. The last chunk is only sealed on
+ * close(), so always close the stream (try-with-resources).
+ */
+public class EncryptingOutputStream extends FilterOutputStream {
+
+    private final DataOutputStream data;
+    private final Cipher cipher;
+    private final byte[] header = new byte[StreamingEncryption.HEADER_LENGTH];
+    private final byte[] noncePrefix;
+    private final byte[] plain;
+    private final byte[] sealed;
+    private int buffered = 0;
+    private int chunkIndex = 0;
+    private boolean closed = false;
+
+    public EncryptingOutputStream(OutputStream out, int chunkSize) throws IOException {
+        super(out);
+        if (chunkSize <= 0 || chunkSize > StreamingEncryption.MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        }
+        this.data = new DataOutputStream(out);
+        this.plain = new byte[chunkSize];
+        this.sealed = new byte[chunkSize + StreamingEncryption.TAG_LENGTH];
+        this.noncePrefix = KeyManager.randomBytes(StreamingEncryption.NONCE_PREFIX_LENGTH);
+
+        try {
+            this.cipher = Cipher.getInstance(KeyManager.AES_GCM);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("AES/GCM unavailable", e);
+        }
+
+        System.arraycopy(StreamingEncryption.MAGIC, 0, header, 0, 4);
+        header[4] = (byte) (chunkSize >>> 24);
+        header[5] = (byte) (chunkSize >>> 16);
+        header[6] = (byte) (chunkSize >>> 8);
+        header[7] = (byte) chunkSize;
+        System.arraycopy(noncePrefix, 0, header, 8, StreamingEncryption.NONCE_PREFIX_LENGTH);
+        data.write(header);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (buffered == plain.length) sealChunk(false);
+        plain[buffered++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            // Only seal a full chunk once more data arrives: it might be the last one
+            if (buffered == plain.length) sealChunk(false);
+            int n = Math.min(len, plain.length - buffered);
+            System.arraycopy(b, off, plain, buffered, n);
+            buffered += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // Partial chunks stay buffered; sealing early would change the chunk layout
+        data.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            sealChunk(true);
+            data.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void sealChunk(boolean last) throws IOException {
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, KeyManager.getKey(),
+                    new GCMParameterSpec(StreamingEncryption.TAG_BITS,
+                            StreamingEncryption.nonce(noncePrefix, chunkIndex)));
+            cipher.updateAAD(header);
+            cipher.updateAAD(new byte[]{(byte) (last ? 1 : 0)});
+            int len = cipher.doFinal(plain, 0, buffered, sealed, 0);
+
+            data.writeInt(last ? (len | StreamingEncryption.FINAL_FLAG) : len);
+            data.write(sealed, 0, len);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Chunk encryption failed", e);
+        }
+        buffered = 0;
+        chunkIndex++;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) throw new IOException("Stream closed");
+    }
+}
@@ -3,16 +3,10 @@ package com.example.brightbuds_app.utils;
 import android.util.Base64;
 import android.util.Log;
 
-import com.example.brightbuds_app.BuildConfig;
-
 import java.nio.charset.StandardCharsets;
-import java.security.SecureRandom;
 import javax.crypto.Cipher;
-import javax.crypto.SecretKey;
-import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.PBEKeySpec;
-import javax.crypto.spec.SecretKeySpec;
 
 /**
  * EncryptionUtil
@@ -22,44 +16,28 @@ import javax.crypto.spec.SecretKeySpec;
  *
  * The secret key is read from an environment variable `BRIGHTBUDS_KEY`
  * so that no sensitive keys are hardcoded in source control.
+ * Key derivation and cipher reuse are handled by {@link KeyManager};
+ * repeat decrypts of the same ciphertext are served by {@link DecryptionCache}.
+ *
+ * Ciphertext formats:
+ *  - v1 (legacy): Base64(IV[16] + AES/CBC/PKCS5Padding ciphertext)
+ *  - v2 (current): "v2:" + Base64(nonce[12] + AES/GCM ciphertext + tag[16])
+ * New values are always written as v2; v1 values are still read.
  */
 public class EncryptionUtil {
 
     private static final String TAG = "EncryptionUtil";
-    private static final String AES_MODE = "AES/CBC/PKCS5Padding";
-    private static final String SALT = "brightbuds_salt_value"; // non-sensitive static salt
-
-    /** Derive AES key from passphrase */
-    private static SecretKeySpec generateKey() throws Exception {
-        String keyString = BuildConfig.BRIGHTBUDS_KEY;
-        if (keyString == null || keyString.isEmpty()) {
-            throw new IllegalStateException("Missing BRIGHTBUDS_KEY environment variable");
-        }
+    private static final int CBC_IV_LENGTH = 16;
+    private static final int GCM_NONCE_LENGTH = 12;
+    private static final int GCM_TAG_BITS = 128;
 
-        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-        PBEKeySpec spec = new PBEKeySpec(keyString.toCharArray(), SALT.getBytes(StandardCharsets.UTF_8), 65536, 256);
-        SecretKey tmp = factory.generateSecret(spec);
-        return new SecretKeySpec(tmp.getEncoded(), "AES");
-    }
+    /** Not part of the Base64 alphabet, so it can never start a v1 value */
+    public static final String V2_PREFIX = "v2:";
 
     public static String encrypt(String data) {
         if (data == null) return "";
         try {
-            Cipher cipher = Cipher.getInstance(AES_MODE);
-            SecretKeySpec key = generateKey();
-
-            byte[] iv = new byte[16];
-            new SecureRandom().nextBytes(iv);
-            IvParameterSpec ivSpec = new IvParameterSpec(iv);
-
-            cipher.init(Cipher.ENCRYPT_MODE, key, ivSpec);
-            byte[] encrypted = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
-
-            byte[] combined = new byte[iv.length + encrypted.length];
-            System.arraycopy(iv, 0, combined, 0, iv.length);
-            System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
-
-            return Base64.encodeToString(combined, Base64.DEFAULT);
+            return encryptGcm(data);
         } catch (Exception e) {
             Log.e(TAG, "❌ Encryption failed: " + e.getMessage());
             return "";
@@ -68,24 +46,76 @@ public class EncryptionUtil {
 
     public static String decrypt(String base64Data) {
         if (base64Data == null || base64Data.trim().isEmpty()) return "";
-        try {
-            byte[] combined = Base64.decode(base64Data, Base64.DEFAULT);
-            if (combined.length < 17) return "";
-
-            byte[] iv = new byte[16];
-            byte[] encrypted = new byte[combined.length - 16];
-            System.arraycopy(combined, 0, iv, 0, 16);
-            System.arraycopy(combined, 16, encrypted, 0, encrypted.length);
 
-            Cipher cipher = Cipher.getInstance(AES_MODE);
-            SecretKeySpec key = generateKey();
-            cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(iv));
+        String cached = DecryptionCache.get(base64Data);
+        if (cached != null) return cached;
 
-            byte[] decrypted = cipher.doFinal(encrypted);
-            return new String(decrypted, StandardCharsets.UTF_8);
+        try {
+            String plain = isV2(base64Data) ? decryptGcm(base64Data) : decryptCbc(base64Data);
+            DecryptionCache.put(base64Data, plain);
+            return plain;
         } catch (Exception e) {
             Log.e(TAG, "❌ Decryption failed: " + e.getMessage());
             return "";
         }
     }
+
+    /** True if the value is already in the current (v2) format */
+    public static boolean isV2(String value) {
+        return value != null && value.startsWith(V2_PREFIX);
+    }
+
+    // v2: AES-GCM
+
+    static String encryptGcm(String data) throws Exception {
+        Cipher cipher = KeyManager.gcmCipher();
+        byte[] nonce = KeyManager.randomBytes(GCM_NONCE_LENGTH);
+        cipher.init(Cipher.ENCRYPT_MODE, KeyManager.getKey(), new GCMParameterSpec(GCM_TAG_BITS, nonce));
+        byte[] encrypted = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
+
+        byte[] combined = new byte[nonce.length + encrypted.length];
+        System.arraycopy(nonce, 0, combined, 0, nonce.length);
+        System.arraycopy(encrypted, 0, combined, nonce.length, encrypted.length);
+
+        return V2_PREFIX + Base64.encodeToString(combined, Base64.NO_WRAP);
+    }
+
+    static String decryptGcm(String value) throws Exception {
+        byte[] combined = Base64.decode(value.substring(V2_PREFIX.length()), Base64.DEFAULT);
+        if (combined.length < GCM_NONCE_LENGTH + GCM_TAG_BITS / 8) return "";
+
+        Cipher cipher = KeyManager.gcmCipher();
+        cipher.init(Cipher.DECRYPT_MODE, KeyManager.getKey(),
+                new GCMParameterSpec(GCM_TAG_BITS, combined, 0, GCM_NONCE_LENGTH));
+
+        byte[] decrypted = cipher.doFinal(combined, GCM_NONCE_LENGTH, combined.length - GCM_NONCE_LENGTH);
+        return new String(decrypted, StandardCharsets.UTF_8);
+    }
+
+    // v1: legacy AES-CBC (read path, plus benchmarking)
+
+    static String encryptCbc(String data) throws Exception {
+        Cipher cipher = KeyManager.cbcCipher();
+        byte[] iv = KeyManager.randomBytes(CBC_IV_LENGTH);
+        cipher.init(Cipher.ENCRYPT_MODE, KeyManager.getKey(), new IvParameterSpec(iv));
+        byte[] encrypted = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
+
+        byte[] combined = new byte[iv.length + encrypted.length];
+        System.arraycopy(iv, 0, combined, 0, iv.length);
+        System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
+
+        return Base64.encodeToString(combined, Base64.DEFAULT);
+    }
+
+    static String decryptCbc(String base64Data) throws Exception {
+        byte[] combined = Base64.decode(base64Data, Base64.DEFAULT);
+        if (combined.length <= CBC_IV_LENGTH) return "";
+
+        Cipher cipher = KeyManager.cbcCipher();
+        cipher.init(Cipher.DECRYPT_MODE, KeyManager.getKey(),
+                new IvParameterSpec(combined, 0, CBC_IV_LENGTH));
+
+        byte[] decrypted = cipher.doFinal(combined, CBC_IV_LENGTH, combined.length - CBC_IV_LENGTH);
+        return new String(decrypted, StandardCharsets.UTF_8);
+    }
 }
@@ -0,0 +1,140 @@
+package com.example.brightbuds_app.utils;
+
+import android.util.Log;
+
+import com.example.brightbuds_app.BuildConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * KeyManager
+ * -----------------------
+ * Process-wide holder for the AES key used by EncryptionUtil.
+ *
+ * The PBKDF2 derivation (65,536 rounds) runs once per process and the
+ * resulting key is kept in memory until the process dies. Call
+ * {@link #warmUpAsync()} from Application.onCreate so the first decrypt on
+ * the main thread finds the key ready.
+ *
+ * Ciphers are not thread-safe, so each thread gets its own reusable
+ * instance per transformation via ThreadLocal.
+ */
+public final class KeyManager {
+
+    private static final String TAG = "KeyManager";
+    private static final String KDF_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String SALT = "brightbuds_salt_value"; // non-sensitive static salt
+    private static final int KDF_ITERATIONS = 65536;
+    private static final int KEY_LENGTH_BITS = 256;
+
+    public static final String AES_CBC = "AES/CBC/PKCS5Padding";
+    public static final String AES_GCM = "AES/GCM/NoPadding";
+
+    private static final Object LOCK = new Object();
+    private static volatile SecretKeySpec cachedKey;
+
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+    private static final ThreadLocal<Cipher> CBC_CIPHER = new ThreadLocal<>();
+    private static final ThreadLocal<Cipher> GCM_CIPHER = new ThreadLocal<>();
+
+    private static final ExecutorService WARM_UP_EXECUTOR =
+            Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "KeyManager-warmup");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private KeyManager() {
+        throw new UnsupportedOperationException("KeyManager should not be instantiated");
+    }
+
+    /** Returns the derived AES key, deriving it on first use. */
+    public static SecretKeySpec getKey() throws GeneralSecurityException {
+        SecretKeySpec key = cachedKey;
+        if (key != null) return key;
+
+        synchronized (LOCK) {
+            if (cachedKey == null) {
+                cachedKey = deriveKey();
+            }
+            return cachedKey;
+        }
+    }
+
+    /** Derives the key on a background thread so the UI never pays for PBKDF2. */
+    public static void warmUpAsync() {
+        if (cachedKey != null) return;
+        WARM_UP_EXECUTOR.execute(() -> {
+            try {
+                long start = System.nanoTime();
+                getKey();
+                Log.i(TAG, "🔑 Encryption key ready in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } catch (Exception e) {
+                Log.e(TAG, "❌ Key warm-up failed: " + e.getMessage());
+            }
+        });
+    }
+
+    public static boolean isKeyReady() {
+        return cachedKey != null;
+    }
+
+    /** Reusable AES/CBC cipher confined to the calling thread. Callers must init() it before use. */
+    public static Cipher cbcCipher() throws GeneralSecurityException {
+        Cipher cipher = CBC_CIPHER.get();
+        if (cipher == null) {
+            cipher = Cipher.getInstance(AES_CBC);
+            CBC_CIPHER.set(cipher);
+        }
+        return cipher;
+    }
+
+    /** Reusable AES/GCM cipher confined to the calling thread. Always init() with a fresh nonce. */
+    public static Cipher gcmCipher() throws GeneralSecurityException {
+        Cipher cipher = GCM_CIPHER.get();
+        if (cipher == null) {
+            cipher = Cipher.getInstance(AES_GCM);
+            GCM_CIPHER.set(cipher);
+        }
+        return cipher;
+    }
+
+    public static SecureRandom secureRandom() {
+        return SECURE_RANDOM;
+    }
+
+    public static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        SECURE_RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static SecretKeySpec deriveKey() throws GeneralSecurityException {
+        String keyString = BuildConfig.BRIGHTBUDS_KEY;
+        if (keyString == null || keyString.isEmpty()) {
+            throw new IllegalStateException("Missing BRIGHTBUDS_KEY environment variable");
+        }
+
+        SecretKeyFactory factory = SecretKeyFactory.getInstance(KDF_ALGORITHM);
+        PBEKeySpec spec = new PBEKeySpec(keyString.toCharArray(),
+                SALT.getBytes(StandardCharsets.UTF_8), KDF_ITERATIONS, KEY_LENGTH_BITS);
+        try {
+            SecretKey tmp = factory.generateSecret(spec);
+            return new SecretKeySpec(tmp.getEncoded(), "AES");
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
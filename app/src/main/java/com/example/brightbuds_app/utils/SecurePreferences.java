@@ -2,102 +2,377 @@ package com.example.brightbuds_app.utils;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.util.AtomicFile;
 import android.util.Log;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 /*
- SecurePreferences - A wrapper around SharedPreferences that encrypts/decrypts data using EncryptionUtil before saving or retrieving.
+ SecurePreferences - Encrypted key/value settings store.
 
  Used for securely storing sensitive user or app settings such as:
  - Login state
  - Last sync timestamp
  - Report preferences
  - Notification and sound settings
+
+ All values live in one process-wide, immutable in-memory snapshot that is
+ decrypted once on first use. Reads are a volatile load plus a map lookup —
+ no locks and no crypto. Writes publish a new snapshot immediately and are
+ coalesced into a single background save of the whole map as one encrypted
+ blob, written via AtomicFile so a crash mid-write leaves the previous
+ version intact.
+
+ Values saved by the old per-key SharedPreferences format are imported
+ once and removed only after the imported blob is safely on disk. A blob
+ that cannot be decrypted is moved aside rather than overwritten; if
+ that fails, saving stays disabled for the rest of the process.
  */
 public class SecurePreferences {
 
     private static final String TAG = "SecurePreferences";
-    private static final String PREF_NAME = "brightbuds_secure_prefs";
+    private static final String PREF_NAME = "brightbuds_secure_prefs"; // legacy per-key store
+    private static final String BLOB_FILE = "brightbuds_secure_prefs.bin";
+    private static final String UNREADABLE_SUFFIX = ".unreadable-";
+    private static final long WRITE_BEHIND_DELAY_MS = 200;
+
+    private static final Object LOCK = new Object();
+    private static volatile Map<String, Object> snapshot;
+    private static AtomicFile blobFile;
+    private static boolean saveScheduled = false;
+    private static boolean savingDisabled = false; // unreadable blob could not be moved aside
 
-    private final SharedPreferences sharedPreferences;
+    private static final ScheduledExecutorService WRITER =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "SecurePreferences-writer");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private final Context appContext;
 
     public SecurePreferences(Context context) {
-        this.sharedPreferences = context.getApplicationContext()
-                .getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        this.appContext = context.getApplicationContext();
+    }
+
+    /** Loads and decrypts the store off the main thread so the first read is free. */
+    public static void preloadAsync(Context context) {
+        Context app = context.getApplicationContext();
+        WRITER.execute(() -> ensureLoaded(app));
     }
 
     // Generic Save Methods
     public void putString(String key, String value) {
-        try {
-            String encryptedValue = EncryptionUtil.encrypt(value);
-            sharedPreferences.edit().putString(key, encryptedValue).apply();
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to save encrypted string for key: " + key, e);
-        }
+        put(key, value);
     }
 
     public void putBoolean(String key, boolean value) {
-        putString(key, String.valueOf(value));
+        put(key, value);
     }
 
     public void putInt(String key, int value) {
-        putString(key, String.valueOf(value));
+        put(key, (long) value);
     }
 
     public void putLong(String key, long value) {
-        putString(key, String.valueOf(value));
+        put(key, value);
     }
 
     // Generic Get Methods
     public String getString(String key, String defaultValue) {
-        try {
-            String encryptedValue = sharedPreferences.getString(key, null);
-            if (encryptedValue == null) return defaultValue;
-
-            String decryptedValue = EncryptionUtil.decrypt(encryptedValue);
-            return decryptedValue != null ? decryptedValue : defaultValue;
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to decrypt string for key: " + key, e);
-            return defaultValue;
-        }
+        Object value = values().get(key);
+        return value != null ? String.valueOf(value) : defaultValue;
     }
 
     public boolean getBoolean(String key, boolean defaultValue) {
-        String value = getString(key, String.valueOf(defaultValue));
-        return Boolean.parseBoolean(value);
+        Object value = values().get(key);
+        if (value instanceof Boolean) return (Boolean) value;
+        if (value instanceof String) return Boolean.parseBoolean((String) value);
+        return defaultValue;
     }
 
     public long getLong(String key, long defaultValue) {
-        String value = getString(key, String.valueOf(defaultValue));
-        try {
-            return Long.parseLong(value);
-        } catch (NumberFormatException e) {
-            return defaultValue;
+        Object value = values().get(key);
+        if (value instanceof Number) return ((Number) value).longValue();
+        if (value instanceof String) {
+            try {
+                return Long.parseLong((String) value);
+            } catch (NumberFormatException e) {
+                return defaultValue;
+            }
         }
+        return defaultValue;
     }
 
     // Utility Methods
     public boolean contains(String key) {
-        return sharedPreferences.contains(key);
+        return values().containsKey(key);
     }
 
     public void remove(String key) {
-        sharedPreferences.edit().remove(key).apply();
+        synchronized (LOCK) {
+            Map<String, Object> current = loadedLocked();
+            if (!current.containsKey(key)) return;
+            Map<String, Object> next = new HashMap<>(current);
+            next.remove(key);
+            publishLocked(next);
+        }
         Log.d(TAG, "Removed key: " + key);
     }
 
     public void clearAll() {
-        sharedPreferences.edit().clear().apply();
+        synchronized (LOCK) {
+            loadedLocked();
+            publishLocked(new HashMap<>());
+        }
         Log.i(TAG, "All secure preferences cleared");
     }
 
+    /**
+     Starts a batch of changes that is published as one snapshot and saved
+     with a single encryption and a single disk write, however many keys it touches.
+     */
+    public Editor edit() {
+        return new Editor();
+    }
+
+    /** Blocks until every pending change is on disk. */
+    public void flush() {
+        try {
+            WRITER.submit(SecurePreferences::saveNow).get();
+        } catch (Exception e) {
+            Log.e(TAG, "Flush failed", e);
+        }
+    }
+
     /*
      For debugging: shows decrypted values of all keys
      Use only in development
      */
     public void logAll() {
-        for (String key : sharedPreferences.getAll().keySet()) {
-            String decrypted = getString(key, "N/A");
-            Log.d(TAG, "Key: " + key + " | Value: " + decrypted);
+        for (Map.Entry<String, Object> entry : values().entrySet()) {
+            Log.d(TAG, "Key: " + entry.getKey() + " | Value: " + entry.getValue());
+        }
+    }
+
+    /** Collects puts/removes and applies them atomically; readers see all or none. */
+    public final class Editor {
+        private final Map<String, Object> puts = new HashMap<>();
+        private final Set<String> removals = new HashSet<>();
+
+        private Editor() { }
+
+        public Editor putString(String key, String value) { return stage(key, value); }
+        public Editor putBoolean(String key, boolean value) { return stage(key, value); }
+        public Editor putInt(String key, int value) { return stage(key, (long) value); }
+        public Editor putLong(String key, long value) { return stage(key, value); }
+
+        public Editor remove(String key) {
+            puts.remove(key);
+            removals.add(key);
+            return this;
+        }
+
+        /** Publishes the batch in memory and queues the background save. */
+        public void apply() {
+            synchronized (LOCK) {
+                Map<String, Object> current = loadedLocked();
+                Map<String, Object> next = new HashMap<>(current);
+                for (String key : removals) next.remove(key);
+                next.putAll(puts);
+                if (next.equals(current)) return;
+                publishLocked(next);
+            }
+        }
+
+        /** Like apply(), but blocks until the batch is on disk. */
+        public void commit() {
+            apply();
+            flush();
+        }
+
+        private Editor stage(String key, Object value) {
+            if (value == null) return remove(key);
+            removals.remove(key);
+            puts.put(key, value);
+            return this;
+        }
+    }
+
+    // SNAPSHOT
+
+    private Map<String, Object> values() {
+        Map<String, Object> current = snapshot;
+        return current != null ? current : ensureLoaded(appContext);
+    }
+
+    private void put(String key, Object value) {
+        synchronized (LOCK) {
+            Map<String, Object> current = loadedLocked();
+            if (value == null ? !current.containsKey(key) : value.equals(current.get(key))) return;
+            Map<String, Object> next = new HashMap<>(current);
+            if (value == null) next.remove(key);
+            else next.put(key, value);
+            publishLocked(next);
+        }
+    }
+
+    private Map<String, Object> loadedLocked() {
+        Map<String, Object> current = snapshot;
+        return current != null ? current : ensureLoaded(appContext);
+    }
+
+    /** Swap in the new snapshot and make sure a save is queued. Caller holds LOCK. */
+    private static void publishLocked(Map<String, Object> next) {
+        snapshot = Collections.unmodifiableMap(next);
+        if (!saveScheduled) {
+            saveScheduled = true;
+            WRITER.schedule(SecurePreferences::saveNow, WRITE_BEHIND_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static Map<String, Object> ensureLoaded(Context context) {
+        synchronized (LOCK) {
+            if (snapshot != null) return snapshot;
+
+            blobFile = new AtomicFile(new File(context.getFilesDir(), BLOB_FILE));
+            Map<String, Object> loaded = readBlob();
+            if (loaded == null) {
+                loaded = importLegacy(context);
+                snapshot = Collections.unmodifiableMap(loaded);
+                if (!loaded.isEmpty()) {
+                    saveScheduled = true;
+                    WRITER.execute(() -> {
+                        if (saveNow()) {
+                            context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE).edit().clear().apply();
+                        } else {
+                            Log.w(TAG, "Legacy preferences kept; import will be retried next launch");
+                        }
+                    });
+                }
+            } else {
+                snapshot = Collections.unmodifiableMap(loaded);
+            }
+            Log.d(TAG, "Loaded " + snapshot.size() + " secure preferences");
+            return snapshot;
+        }
+    }
+
+    // PERSISTENCE (writer thread only)
+
+    /** @return true once the current snapshot is on disk */
+    private static boolean saveNow() {
+        Map<String, Object> toSave;
+        AtomicFile file;
+        synchronized (LOCK) {
+            saveScheduled = false;
+            toSave = snapshot;
+            file = blobFile;
+            if (savingDisabled) {
+                Log.w(TAG, "Saving disabled; unreadable preferences left untouched");
+                return false;
+            }
+        }
+        if (toSave == null || file == null) return false;
+
+        FileOutputStream out = null;
+        try {
+            String encrypted = EncryptionUtil.encrypt(toJson(toSave).toString());
+            if (encrypted.isEmpty()) {
+                Log.e(TAG, "Encryption failed; keeping previous preferences on disk");
+                return false;
+            }
+            out = file.startWrite();
+            out.write(encrypted.getBytes(StandardCharsets.UTF_8));
+            file.finishWrite(out); // fsync + atomic rename
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to persist secure preferences", e);
+            if (out != null) file.failWrite(out);
+            return false;
+        }
+    }
+
+    /** @return null when there is no readable blob to start from. Caller holds LOCK. */
+    private static Map<String, Object> readBlob() {
+        try {
+            byte[] bytes = blobFile.readFully();
+            String json = EncryptionUtil.decrypt(new String(bytes, StandardCharsets.UTF_8));
+            if (json.isEmpty()) {
+                Log.e(TAG, "Secure preferences blob could not be decrypted");
+                return setAsideUnreadable();
+            }
+            return fromJson(new JSONObject(json));
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Failed to read secure preferences", e);
+            return setAsideUnreadable();
+        }
+    }
+
+    /**
+     * Moves an unreadable blob out of the way so new saves cannot overwrite
+     * it. If it cannot be moved, saving is disabled instead.
+     */
+    private static Map<String, Object> setAsideUnreadable() {
+        File base = blobFile.getBaseFile();
+        File aside = new File(base.getPath() + UNREADABLE_SUFFIX + System.currentTimeMillis());
+        if (base.renameTo(aside)) {
+            Log.w(TAG, "Unreadable preferences kept as " + aside.getName() + "; starting empty");
+            return null;
+        }
+        savingDisabled = true;
+        Log.e(TAG, "Could not move unreadable preferences aside; changes will not be saved");
+        return new HashMap<>();
+    }
+
+    /** One-time import of the old one-encrypted-string-per-key SharedPreferences */
+    private static Map<String, Object> importLegacy(Context context) {
+        SharedPreferences legacy = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        Map<String, Object> imported = new HashMap<>();
+        for (Map.Entry<String, ?> entry : legacy.getAll().entrySet()) {
+            if (!(entry.getValue() instanceof String)) continue;
+            String decrypted = EncryptionUtil.decrypt((String) entry.getValue());
+            if (!decrypted.isEmpty()) imported.put(entry.getKey(), decrypted);
+        }
+        if (!imported.isEmpty()) Log.i(TAG, "Imported " + imported.size() + " legacy secure preferences");
+        return imported;
+    }
+
+    private static JSONObject toJson(Map<String, Object> values) throws JSONException {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            json.put(entry.getKey(), entry.getValue());
+        }
+        return json;
+    }
+
+    private static Map<String, Object> fromJson(JSONObject json) throws JSONException {
+        Map<String, Object> values = new HashMap<>();
+        Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            Object value = json.get(key);
+            if (value instanceof Number) value = ((Number) value).longValue();
+            values.put(key, value);
         }
+        return values;
     }
 }
@@ -0,0 +1,127 @@
+package com.example.brightbuds_app.utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * StreamingEncryption
+ * -----------------------
+ * Chunked AES-GCM encryption for files (family photos, PDF reports).
+ *
+ * Data is split into fixed-size chunks, each sealed with its own nonce and
+ * tag, so memory use is bounded by one chunk regardless of file size and a
+ * reader can start consuming plaintext before the whole file is read.
+ *
+ * File layout:
+ *   header: magic "BBS1" | chunk size (int) | nonce prefix (8 bytes)
+ *   frames: length (int, high bit = final chunk) | ciphertext + tag
+ *
+ * Chunk nonce = prefix | chunk index. The header and final flag are bound in
+ * as AAD, so reordering, truncation and tail-stripping all fail authentication.
+ */
+public final class StreamingEncryption {
+
+    static final byte[] MAGIC = {'B', 'B', 'S', '1'};
+    static final int HEADER_LENGTH = 16;
+    static final int NONCE_PREFIX_LENGTH = 8;
+    static final int NONCE_LENGTH = 12;
+    static final int TAG_BITS = 128;
+    static final int TAG_LENGTH = TAG_BITS / 8;
+    static final int FINAL_FLAG = 0x80000000;
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    static final int MAX_CHUNK_SIZE = 1024 * 1024;
+
+    private StreamingEncryption() {
+        throw new UnsupportedOperationException("StreamingEncryption should not be instantiated");
+    }
+
+    /** Wraps an output stream; everything written is encrypted. Close it to seal the final chunk. */
+    public static OutputStream encryptingStream(OutputStream out) throws IOException {
+        return new EncryptingOutputStream(out, DEFAULT_CHUNK_SIZE);
+    }
+
+    /** Wraps an encrypted input stream and yields plaintext as it is read. */
+    public static InputStream decryptingStream(InputStream in) throws IOException {
+        return new DecryptingInputStream(in);
+    }
+
+    /** Copies all of {@code in} into {@code out} encrypted. Closes {@code out}, not {@code in}. */
+    public static void encrypt(InputStream in, OutputStream out) throws IOException {
+        try (OutputStream enc = encryptingStream(out)) {
+            copy(in, enc);
+        }
+    }
+
+    /** Copies the decrypted contents of {@code in} into {@code out}. Closes neither. */
+    public static void decrypt(InputStream in, OutputStream out) throws IOException {
+        copy(new DecryptingInputStream(in), out);
+    }
+
+    /** Channel variant of {@link #encrypt(InputStream, OutputStream)}; closes both channels. */
+    public static void encrypt(FileChannel source, FileChannel target) throws IOException {
+        try (InputStream in = Channels.newInputStream(source)) {
+            encrypt(in, Channels.newOutputStream(target));
+        }
+    }
+
+    /** Encrypts {@code in} straight into {@code target}; plaintext never touches disk. */
+    public static void encryptToFile(InputStream in, File target) throws IOException {
+        encrypt(in, new FileOutputStream(target));
+    }
+
+    /** Opens an encrypted file for streaming reads. */
+    public static InputStream openDecrypted(File file) throws IOException {
+        return new DecryptingInputStream(new BufferedInputStream(new FileInputStream(file), DEFAULT_CHUNK_SIZE));
+    }
+
+    /** Opens a file that may be encrypted (new) or plaintext (saved before encryption was added). */
+    public static InputStream openMaybeEncrypted(File file) throws IOException {
+        return isEncrypted(file) ? openDecrypted(file) : new FileInputStream(file);
+    }
+
+    /** True if the file starts with the streaming-encryption header. */
+    public static boolean isEncrypted(File file) {
+        if (file == null || file.length() < HEADER_LENGTH) return false;
+        try (FileChannel ch = new FileInputStream(file).getChannel()) {
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            while (magic.hasRemaining() && ch.read(magic) > 0) { /* fill */ }
+            return Arrays.equals(magic.array(), MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static void readHeader(DataInputStream in, byte[] header) throws IOException {
+        in.readFully(header);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) throw new IOException("Not a BrightBuds encrypted stream");
+        }
+    }
+
+    static byte[] nonce(byte[] prefix, int index) {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        System.arraycopy(prefix, 0, nonce, 0, NONCE_PREFIX_LENGTH);
+        nonce[8] = (byte) (index >>> 24);
+        nonce[9] = (byte) (index >>> 16);
+        nonce[10] = (byte) (index >>> 8);
+        nonce[11] = (byte) index;
+        return nonce;
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        int len;
+        while ((len = in.read(buffer)) != -1) out.write(buffer, 0, len);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.brightbuds_app.services;
+
+import com.example.brightbuds_app.models.CounterDelta;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Re-sending counters after a lost ack must not apply them twice.
+ */
+public class CounterSyncTest {
+
+    private static final String DEVICE = "device1";
+
+    @Test
+    public void resendAfterLostAckAddsNothing() {
+        List<CounterDelta> doc = Arrays.asList(
+                delta("plays", 3L, 1L),
+                delta("timeSpent", 90_000L, 30_000L));
+
+        // The first commit reached the server and raised the slots; the local ack did not happen
+        Map<String, Object> counters = new HashMap<>();
+        counters.put("plays", Collections.singletonMap(DEVICE, 3L));
+        counters.put("timeSpent", Collections.singletonMap(DEVICE, 90_000L));
+
+        assertTrue(CounterSync.unappliedIncrements(doc, counters, DEVICE).isEmpty());
+    }
+
+    @Test
+    public void firstSendAddsWhatTheSlotIsMissing() {
+        List<CounterDelta> doc = Arrays.asList(
+                delta("plays", 3L, 1L),
+                delta("timeSpent", 90_000L, 30_000L));
+
+        // Another device's slot does not count towards this one
+        Map<String, Object> counters = new HashMap<>();
+        counters.put("plays", Collections.singletonMap("device2", 5L));
+
+        Map<String, Long> increments = CounterSync.unappliedIncrements(doc, null, DEVICE);
+        assertEquals(Long.valueOf(3L), increments.get("plays"));
+        assertEquals(Long.valueOf(90_000L), increments.get("timeSpent"));
+        assertEquals(Long.valueOf(3L),
+                CounterSync.unappliedIncrements(doc, counters, DEVICE).get("plays"));
+    }
+
+    private static CounterDelta delta(String field, long localTotal, long acked) {
+        return new CounterDelta("child1_m1", "parent1", "child1", "m1", field, localTotal, acked);
+    }
+}
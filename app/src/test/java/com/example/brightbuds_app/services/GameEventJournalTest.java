@@ -0,0 +1,43 @@
+package com.example.brightbuds_app.services;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * How journaled events turn into session writes: deltas are summed per
+ * session, and events a crashed replay already applied are skipped.
+ */
+public class GameEventJournalTest {
+
+    @Test
+    public void replaySkipsEventsAlreadyApplied() {
+        GameEventJournal.Batch batch = new GameEventJournal.Batch(Arrays.asList(
+                event("m1", 1_000L, 10_000L, 1),
+                event("m1", 2_000L, 5_000L, 0),
+                event("m1", 3_000L, 7_000L, 1)), 0);
+
+        Map<String, Long> appliedUpTo = new HashMap<>();
+        appliedUpTo.put("child1_m1", 2_000L);
+        Collection<GameEventJournal.Event> sessions = batch.coalescePerSession(appliedUpTo);
+
+        assertEquals(1, sessions.size());
+        GameEventJournal.Event session = sessions.iterator().next();
+        assertEquals(3_000L, session.timestamp);
+        assertEquals(7_000L, session.timeSpentDeltaMs);
+        assertEquals(1, session.playsDelta);
+
+        appliedUpTo.put("child1_m1", 3_000L);
+        assertTrue(batch.coalescePerSession(appliedUpTo).isEmpty());
+    }
+
+    private static GameEventJournal.Event event(String moduleId, long timestamp, long timeSpent, int plays) {
+        return new GameEventJournal.Event("child1", moduleId, timestamp, 80, timeSpent,
+                3, 4, 1, plays);
+    }
+}
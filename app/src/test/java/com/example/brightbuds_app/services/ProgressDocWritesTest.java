@@ -0,0 +1,49 @@
+package com.example.brightbuds_app.services;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * A canonical progress document keeps its best score and stays completed,
+ * whatever order the writes arrive in.
+ */
+public class ProgressDocWritesTest {
+
+    @Test
+    public void lowerScoreKeepsStoredBestAndCompletion() {
+        Map<String, Object> merged = ProgressDocWrites.keepBest(
+                doc(90, "completed", true), doc(40, "in_progress", false));
+
+        assertEquals(90, ((Number) merged.get("score")).intValue());
+        assertEquals("completed", merged.get("status"));
+        assertEquals(true, merged.get("completionStatus"));
+    }
+
+    @Test
+    public void higherScoreReplacesStoredOne() {
+        Map<String, Object> merged = ProgressDocWrites.keepBest(
+                doc(40, "in_progress", false), doc(95, "completed", true));
+
+        assertEquals(95, ((Number) merged.get("score")).intValue());
+        assertEquals("completed", merged.get("status"));
+    }
+
+    @Test
+    public void newDocumentTakesIncomingFields() {
+        Map<String, Object> merged = ProgressDocWrites.keepBest(null, doc(40, "in_progress", false));
+        assertEquals(40, ((Number) merged.get("score")).intValue());
+        assertEquals("in_progress", merged.get("status"));
+    }
+
+    private static Map<String, Object> doc(int score, String status, boolean completed) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("score", score);
+        data.put("status", status);
+        data.put("completionStatus", completed);
+        return data;
+    }
+}
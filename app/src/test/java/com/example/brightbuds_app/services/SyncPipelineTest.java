@@ -0,0 +1,50 @@
+package com.example.brightbuds_app.services;
+
+import com.google.firebase.firestore.FirebaseFirestoreException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Which upload failures SyncPipeline gives up on, and which it keeps for
+ * the next drain.
+ */
+public class SyncPipelineTest {
+
+    @Test
+    public void onlyFirestoreVerdictsArePermanent() {
+        assertTrue(SyncPipeline.isPermanent(firestoreError(FirebaseFirestoreException.Code.PERMISSION_DENIED)));
+        assertTrue(SyncPipeline.isPermanent(firestoreError(FirebaseFirestoreException.Code.INVALID_ARGUMENT)));
+        assertFalse(SyncPipeline.isPermanent(firestoreError(FirebaseFirestoreException.Code.UNAVAILABLE)));
+        assertFalse(SyncPipeline.isPermanent(firestoreError(FirebaseFirestoreException.Code.RESOURCE_EXHAUSTED)));
+    }
+
+    @Test
+    public void invalidDocumentIdIsRejected() {
+        assertTrue(SyncPipeline.isPermanent(new IllegalArgumentException(
+                "Invalid document reference. Document references must have an even number of segments")));
+    }
+
+    @Test
+    public void unserializableDocumentIsRejected() {
+        assertTrue(SyncPipeline.isPermanent(new IllegalArgumentException(
+                "Could not serialize object. Serializing Arrays is not supported")));
+    }
+
+    @Test
+    public void unknownQueueOperationIsRejected() {
+        assertTrue(SyncPipeline.isPermanent(new IllegalArgumentException("Unknown operation: merge")));
+    }
+
+    @Test
+    public void localStateFailuresAreDeferred() {
+        assertFalse(SyncPipeline.isPermanent(new IllegalStateException("database not open")));
+        assertFalse(SyncPipeline.isPermanent(new IllegalStateException("The client has already been terminated")));
+        assertFalse(SyncPipeline.isPermanent(new RuntimeException("disk I/O error")));
+    }
+
+    private static FirebaseFirestoreException firestoreError(FirebaseFirestoreException.Code code) {
+        return new FirebaseFirestoreException(code.name(), code);
+    }
+}